@@ -1,5 +1,6 @@
 package com.expensetracker.backend.controller;
 
+import com.expensetracker.backend.exception.PasswordHashingBusyException;
 import com.expensetracker.backend.exception.TokenRefreshException;
 import com.expensetracker.backend.model.RefreshToken;
 import com.expensetracker.backend.model.User;
@@ -85,10 +86,15 @@ public class AuthController {
         user.setEmail(signupRequest.getEmail());
         user.setName(signupRequest.getName());
         user.setPasswordHash(signupRequest.getPassword()); // Mật khẩu sẽ được mã hóa trong UserService
+        user.setTimeZone(signupRequest.getTimeZone());
 
         try {
             userService.createUser(user); // Gọi UserService để lưu người dùng
             return ResponseEntity.status(HttpStatus.CREATED).body(new MessageResponse("User registered successfully!"));
+        } catch (PasswordHashingBusyException e) {
+            throw e; // GlobalExceptionHandler trả 503 + Retry-After
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new MessageResponse("Error: " + e.getMessage()));
         }
@@ -102,7 +108,7 @@ public class AuthController {
                 .map(refreshTokenService::verifyExpiration)
                 .map(RefreshToken::getUser)
                 .map(user -> {
-                    String token = jwtUtils.generateTokenFromUserId(user.getId().toString());
+                    String token = jwtUtils.generateTokenFromUser(user);
                     return ResponseEntity.ok(new TokenRefreshResponse(token, requestRefreshToken));
                 })
                 .orElseThrow(() -> new TokenRefreshException(requestRefreshToken,
@@ -4,12 +4,14 @@ import com.expensetracker.backend.dto.BudgetDTO;
 import com.expensetracker.backend.model.Budget;
 import com.expensetracker.backend.security.services.UserDetailsImpl;
 import com.expensetracker.backend.service.BudgetService;
+import com.expensetracker.backend.service.UserDataVersionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.UUID;
@@ -21,6 +23,9 @@ public class BudgetController {
     @Autowired
     private BudgetService budgetService;
 
+    @Autowired
+    private UserDataVersionService dataVersionService;
+
     // Helper method để lấy User ID từ principal
     private UUID getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -35,11 +40,16 @@ public class BudgetController {
     @GetMapping
     public ResponseEntity<List<BudgetDTO>> getBudgets(
             @RequestParam int month,
-            @RequestParam int year) {
+            @RequestParam int year,
+            WebRequest request) {
 
         UUID userId = getCurrentUserId();
+        String etag = ConditionalRequests.etag(dataVersionService.getVersion(userId), userId, month, year);
+        if (request.checkNotModified(etag)) {
+            return ConditionalRequests.notModified(etag);
+        }
         List<BudgetDTO> budgets = budgetService.getBudgetsForMonth(userId, month, year);
-        return ResponseEntity.ok(budgets);
+        return ConditionalRequests.ok(etag).body(budgets);
     }
 
     /**
@@ -0,0 +1,37 @@
+package com.expensetracker.backend.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Tiện ích cho GET có điều kiện (ETag / If-None-Match) dựa trên phiên bản dữ liệu của người dùng.
+ */
+final class ConditionalRequests {
+
+    // Cho phép trình duyệt lưu riêng nhưng luôn hỏi lại server (gửi If-None-Match) trước khi dùng
+    static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * ETag gồm phiên bản dữ liệu và dấu vân tay của người dùng + tham số truy vấn,
+     * để cùng một phiên bản nhưng khác trang/bộ lọc không dùng chung ETag.
+     */
+    static String etag(long dataVersion, UUID userId, Object... params) {
+        int fingerprint = 31 * userId.hashCode() + Arrays.deepHashCode(params);
+        return "\"" + dataVersion + "-" + Integer.toHexString(fingerprint) + "\"";
+    }
+
+    static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CACHE_CONTROL).build();
+    }
+
+    static ResponseEntity.BodyBuilder ok(String etag) {
+        return ResponseEntity.ok().eTag(etag).cacheControl(CACHE_CONTROL);
+    }
+}
@@ -1,12 +1,18 @@
 package com.expensetracker.backend.controller;
 
 import com.expensetracker.backend.dto.ApiResponse;
+import com.expensetracker.backend.dto.CashFlowForecast;
 import com.expensetracker.backend.dto.DashboardStats;
+import com.expensetracker.backend.payload.response.MessageResponse;
 import com.expensetracker.backend.security.services.UserDetailsImpl;
+import com.expensetracker.backend.service.CashFlowForecastService;
+import com.expensetracker.backend.service.DashboardCache;
 import com.expensetracker.backend.service.DashboardService;
+import com.expensetracker.backend.service.UserDataVersionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -14,7 +20,11 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -26,11 +36,21 @@ public class DashboardController {
     @Autowired
     private DashboardService dashboardService;
 
+    @Autowired
+    private DashboardCache dashboardCache;
+
+    @Autowired
+    private UserDataVersionService dataVersionService;
+
+    @Autowired
+    private CashFlowForecastService forecastService;
+
     @GetMapping(value = "/stats", produces = "application/json")
     public ResponseEntity<?> getStats(
             @AuthenticationPrincipal UserDetailsImpl userDetails,
             @RequestParam int month,
-            @RequestParam int year) {
+            @RequestParam int year,
+            WebRequest request) {
 
         if (userDetails == null) {
             logger.warn("UserDetails is null, returning UNAUTHORIZED");
@@ -39,9 +59,77 @@ public class DashboardController {
         UUID userId = userDetails.getId();
         logger.info("Fetching stats for userId: {}, month: {}, year: {}", userId, month, year);
 
-        DashboardStats stats = dashboardService.getDashboardStats(userId, month, year);
+        // Dữ liệu chưa đổi kể từ lần trước: trả 304 mà không chạy truy vấn tổng hợp nào
+        long dataVersion = dataVersionService.getVersion(userId);
+        String etag = ConditionalRequests.etag(dataVersion, userId, month, year);
+        if (request.checkNotModified(etag)) {
+            return ConditionalRequests.notModified(etag);
+        }
+
+        // Chỉ truy vấn database khi cache chưa có mục của phiên bản dữ liệu này; mọi thao tác ghi đều tăng phiên bản
+        DashboardStats stats = dashboardCache.get(userId, month, year, dataVersion,
+                () -> dashboardService.getDashboardStats(userId, month, year));
 
         logger.info("Stats fetched successfully for userId: {}", userId);
-        return ResponseEntity.ok(new ApiResponse<>(true, stats));
+        return ConditionalRequests.ok(etag).body(new ApiResponse<>(true, stats));
+    }
+
+    /**
+     * Chuỗi thu/chi theo tháng (đã lấp các tháng trống) cho biểu đồ, trong một lần gọi.
+     * VD: GET /api/dashboard/monthly?from=2025-01&to=2025-12
+     */
+    @GetMapping(value = "/monthly", produces = "application/json")
+    public ResponseEntity<?> getMonthlySeries(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth to,
+            WebRequest request) {
+
+        if (userDetails == null) {
+            logger.warn("UserDetails is null, returning UNAUTHORIZED");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        UUID userId = userDetails.getId();
+
+        String etag = ConditionalRequests.etag(dataVersionService.getVersion(userId), userId, from, to);
+        if (request.checkNotModified(etag)) {
+            return ConditionalRequests.notModified(etag);
+        }
+        try {
+            List<DashboardStats.MonthlyData> series = dashboardService.getMonthlySeries(userId, from, to);
+            return ConditionalRequests.ok(etag).body(new ApiResponse<>(true, series));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Các lần thực thi sắp tới của giao dịch định kỳ và số dư cuối tháng dự kiến, tính trên bộ nhớ
+     * (không ghi giao dịch nào). VD: GET /api/dashboard/forecast?months=3
+     */
+    @GetMapping(value = "/forecast", produces = "application/json")
+    public ResponseEntity<?> getForecast(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @RequestParam(defaultValue = "3") int months,
+            WebRequest request) {
+
+        if (userDetails == null) {
+            logger.warn("UserDetails is null, returning UNAUTHORIZED");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        UUID userId = userDetails.getId();
+
+        // Dự báo phụ thuộc cả ngày hiện tại (theo múi giờ người dùng) nên ETag có thêm ngày
+        LocalDate today = forecastService.today(userId);
+        String etag = ConditionalRequests.etag(dataVersionService.getVersion(userId), userId, months, today);
+        if (request.checkNotModified(etag)) {
+            return ConditionalRequests.notModified(etag);
+        }
+        try {
+            CashFlowForecast forecast = forecastService.forecast(userId, months, today);
+            return ConditionalRequests.ok(etag).body(new ApiResponse<>(true, forecast));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
     }
-}
\ No newline at end of file
+}
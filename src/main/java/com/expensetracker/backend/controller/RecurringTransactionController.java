@@ -1,6 +1,7 @@
 package com.expensetracker.backend.controller;
 
 import com.expensetracker.backend.model.RecurringTransaction;
+import com.expensetracker.backend.payload.response.MessageResponse;
 import com.expensetracker.backend.security.services.UserDetailsImpl;
 import com.expensetracker.backend.service.RecurringTransactionService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,15 +27,19 @@ public class RecurringTransactionController {
     }
 
     @PostMapping
-    public ResponseEntity<RecurringTransaction> createRecurringTransaction(
+    public ResponseEntity<?> createRecurringTransaction(
             @RequestBody RecurringTransaction rt,
             @AuthenticationPrincipal UserDetailsImpl userDetails) {
-        RecurringTransaction created = recurringService.createRecurringTransaction(rt, userDetails.getId());
-        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        try {
+            RecurringTransaction created = recurringService.createRecurringTransaction(rt, userDetails.getId());
+            return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<RecurringTransaction> updateRecurringTransaction(
+    public ResponseEntity<?> updateRecurringTransaction(
             @PathVariable UUID id,
             @RequestBody RecurringTransaction details,
             @AuthenticationPrincipal UserDetailsImpl userDetails) {
@@ -43,6 +48,8 @@ public class RecurringTransactionController {
             return ResponseEntity.ok(updated);
         } catch (SecurityException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
         }
     }
 
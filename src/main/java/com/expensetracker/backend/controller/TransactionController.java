@@ -1,17 +1,33 @@
 package com.expensetracker.backend.controller;
 
+import com.expensetracker.backend.dto.CursorPage;
+import com.expensetracker.backend.dto.TransactionListItem;
 import com.expensetracker.backend.model.Transaction;
+import com.expensetracker.backend.payload.response.MessageResponse;
 import com.expensetracker.backend.security.services.UserDetailsImpl; // Thêm import này
+import com.expensetracker.backend.service.TransactionExportWriter;
+import com.expensetracker.backend.service.TransactionImportParser;
 import com.expensetracker.backend.service.TransactionService;
+import com.expensetracker.backend.service.UserDataVersionService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDate; // Thêm import cho các tham số filter
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -19,10 +35,18 @@ import java.util.UUID;
 public class TransactionController {
 
     private final TransactionService transactionService;
+    private final TransactionImportParser importParser;
+    private final UserDataVersionService dataVersionService;
+
+    @Value("${transactions.export.timeout:10m}")
+    private Duration exportTimeout;
 
     @Autowired
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService, TransactionImportParser importParser,
+                                 UserDataVersionService dataVersionService) {
         this.transactionService = transactionService;
+        this.importParser = importParser;
+        this.dataVersionService = dataVersionService;
     }
 
     /**
@@ -43,9 +67,16 @@ public class TransactionController {
     /**
      * Lấy danh sách giao dịch đã được phân trang và lọc.
      * Controller chỉ nhận tham số và chuyển cho Service, không xử lý logic phức tạp.
+     *
+     * Nếu có tham số "cursor" (để trống cho trang đầu), dùng phân trang keyset:
+     * thứ tự cố định date/createdAt/id giảm dần, bỏ qua "page" và "sort", không có COUNT.
+     * "size" phải từ 1 đến 100, nếu không sẽ trả về 400.
+     * VD: GET /api/transactions?cursor=&size=20, sau đó GET /api/transactions?cursor={nextCursor}&size=20
+     *
+     * Có ETag theo phiên bản dữ liệu: gửi lại If-None-Match sẽ nhận 304 nếu không có gì thay đổi.
      */
     @GetMapping
-    public ResponseEntity<Page<Transaction>> getTransactions(
+    public ResponseEntity<?> getTransactions(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "date,desc") String[] sort,
@@ -53,13 +84,57 @@ public class TransactionController {
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String search,
             @RequestParam(required = false) LocalDate dateFrom,
-            @RequestParam(required = false) LocalDate dateTo) {
+            @RequestParam(required = false) LocalDate dateTo,
+            @RequestParam(required = false) String cursor,
+            WebRequest request) {
 
         UUID userId = getCurrentUserId();
+        String etag = ConditionalRequests.etag(dataVersionService.getVersion(userId), userId,
+                page, size, sort, type, category, search, dateFrom, dateTo, cursor);
+        if (request.checkNotModified(etag)) {
+            return ConditionalRequests.notModified(etag);
+        }
+        if (cursor != null) {
+            try {
+                CursorPage<TransactionListItem> slice = transactionService.getTransactionsAfterCursor(
+                        userId, type, category, search, dateFrom, dateTo, cursor, size);
+                return ConditionalRequests.ok(etag).body(slice);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+            }
+        }
         // Giao toàn bộ việc lọc và phân trang cho tầng Service
-        Page<Transaction> transactions = transactionService.getFilteredTransactions(
+        Page<TransactionListItem> transactions = transactionService.getFilteredTransactions(
                 userId, type, category, search, dateFrom, dateTo, page, size, sort);
-        return ResponseEntity.ok(transactions);
+        return ConditionalRequests.ok(etag).body(transactions);
+    }
+
+    /**
+     * Xuất toàn bộ giao dịch (theo cùng bộ lọc như danh sách) dưới dạng CSV hoặc NDJSON.
+     * Dữ liệu được stream thẳng từ con trỏ database ra response, bộ nhớ dùng không đổi theo số dòng.
+     * Chạy async với thời gian chờ riêng (transactions.export.timeout), không đổi timeout async chung.
+     * VD: GET /api/transactions/export?format=ndjson&dateFrom=2024-01-01
+     */
+    @GetMapping("/export")
+    public WebAsyncTask<Void> exportTransactions(
+            @RequestParam(defaultValue = "csv") TransactionExportWriter.Format format,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) LocalDate dateFrom,
+            @RequestParam(required = false) LocalDate dateTo,
+            HttpServletResponse response) {
+
+        // Lấy userId trên luồng request, vì phần thân được ghi trên luồng async
+        UUID userId = getCurrentUserId();
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions." + format.name() + "\"");
+        response.setContentType(format.getContentType());
+
+        return new WebAsyncTask<>(exportTimeout.toMillis(), () -> {
+            transactionService.exportTransactions(
+                    userId, type, category, search, dateFrom, dateTo, format, response.getOutputStream());
+            return null;
+        });
     }
 
     /**
@@ -74,6 +149,23 @@ public class TransactionController {
         return new ResponseEntity<>(createdTransaction, HttpStatus.CREATED);
     }
 
+    /**
+     * Import hàng loạt giao dịch từ file CSV (có dòng tiêu đề) hoặc JSON (mảng).
+     * POST /api/transactions/import (multipart, field "file")
+     */
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importTransactions(@RequestParam("file") MultipartFile file) throws IOException {
+        UUID userId = getCurrentUserId();
+        try {
+            List<Transaction> transactions = importParser.parse(file.getInputStream(), file.getOriginalFilename());
+            int imported = transactionService.importTransactions(transactions, userId);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(new MessageResponse("Imported " + imported + " transactions"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse("Error: " + e.getMessage()));
+        }
+    }
+
     /**
      * Cập nhật một giao dịch đã có.
      */
@@ -1,5 +1,6 @@
 package com.expensetracker.backend.controller;
 
+import com.expensetracker.backend.exception.PasswordHashingBusyException;
 import com.expensetracker.backend.model.User;
 import com.expensetracker.backend.service.UserService;
 import org.springframework.http.HttpStatus;
@@ -41,6 +42,10 @@ public class UserController {
         try {
             User createdUser = userService.createUser(user);
             return ResponseEntity.status(HttpStatus.CREATED).body(createdUser); // Trả về 201 Created
+        } catch (PasswordHashingBusyException e) {
+            throw e; // GlobalExceptionHandler trả 503 + Retry-After
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build(); // 400 Bad Request (vd múi giờ không hợp lệ)
         } catch (RuntimeException e) {
             // Xử lý lỗi trùng lặp username/email
             return ResponseEntity.status(HttpStatus.CONFLICT).build(); // 409 Conflict
@@ -53,6 +58,10 @@ public class UserController {
         try {
             User updatedUser = userService.updateUser(id, userDetails);
             return ResponseEntity.ok(updatedUser); // Trả về 200 OK
+        } catch (PasswordHashingBusyException e) {
+            throw e; // GlobalExceptionHandler trả 503 + Retry-After
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build(); // 400 Bad Request (vd múi giờ không hợp lệ)
         } catch (RuntimeException e) {
             if (e.getMessage().contains("not found")) {
                 return ResponseEntity.notFound().build(); // 404 Not Found
@@ -0,0 +1,19 @@
+package com.expensetracker.backend.dto;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.UUID;
+
+/**
+ * Kết quả một lần đối soát spentAmount của ngân sách cho một tháng.
+ *
+ * @param budgetsChecked   số ngân sách đã kiểm tra
+ * @param budgetsCorrected số ngân sách bị lệch và đã được sửa
+ * @param totalDrift       tổng độ lệch tuyệt đối đã sửa
+ * @param failedChunks     số khối người dùng bị lỗi và đã bỏ qua (được đối soát lại ở vòng sau)
+ * @param cursor           user id cuối cùng đã xử lý nếu job dừng giữa chừng (lần chạy sau tiếp tục từ đây); null khi xong
+ * @param completed        false nếu job dừng vì hết thời gian cho phép trước khi duyệt hết
+ */
+public record BudgetReconciliationReport(YearMonth month, long budgetsChecked, long budgetsCorrected,
+                                         BigDecimal totalDrift, long failedChunks, UUID cursor, boolean completed) {
+}
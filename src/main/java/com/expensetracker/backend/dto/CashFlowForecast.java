@@ -0,0 +1,35 @@
+package com.expensetracker.backend.dto;
+
+import com.expensetracker.backend.model.Transaction;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Dự báo dòng tiền: các lần thực thi sắp tới của giao dịch định kỳ (theo thứ tự ngày)
+ * và số dư cuối tháng dự kiến cho từng tháng trong khoảng dự báo.
+ *
+ * @param occurrences          các lần thực thi trong khoảng [from, to], tối đa một số lượng cấu hình
+ * @param occurrencesTruncated true nếu danh sách bị cắt (tổng theo tháng vẫn tính đủ mọi lần thực thi)
+ */
+public record CashFlowForecast(LocalDate from, LocalDate to, BigDecimal currentBalance,
+                               List<Occurrence> occurrences, boolean occurrencesTruncated,
+                               List<MonthProjection> months) {
+
+    public record Occurrence(LocalDate date, UUID recurringTransactionId, String title, String category,
+                             Transaction.TransactionType type, BigDecimal amount) {
+    }
+
+    /**
+     * @param recurringIncome        tổng thu định kỳ còn lại trong tháng
+     * @param recurringExpenses      tổng chi định kỳ còn lại trong tháng
+     * @param estimatedOtherExpenses chi tiêu khác ước tính từ trung bình lịch sử theo danh mục
+     * @param projectedEndBalance    số dư cuối tháng dự kiến
+     */
+    public record MonthProjection(YearMonth month, BigDecimal recurringIncome, BigDecimal recurringExpenses,
+                                  BigDecimal estimatedOtherExpenses, BigDecimal projectedEndBalance) {
+    }
+}
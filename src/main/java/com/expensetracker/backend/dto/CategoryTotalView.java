@@ -0,0 +1,13 @@
+package com.expensetracker.backend.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Tổng tiền của một danh mục trong kết quả truy vấn gộp.
+ */
+public interface CategoryTotalView {
+
+    String getCategory();
+
+    BigDecimal getTotal();
+}
@@ -0,0 +1,21 @@
+package com.expensetracker.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Một "lát" kết quả phân trang keyset. Không có totalElements/totalPages
+ * vì chế độ này không chạy truy vấn COUNT.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor; // null nếu đã hết dữ liệu
+    private boolean hasNext;
+}
@@ -0,0 +1,20 @@
+package com.expensetracker.backend.dto;
+
+import com.expensetracker.backend.model.Transaction;
+
+import java.math.BigDecimal;
+
+/**
+ * Một dòng kết quả của truy vấn dashboard gộp: với mỗi (loại, danh mục),
+ * tổng tiền và số giao dịch của tháng được chọn.
+ */
+public interface DashboardAggregateView {
+
+    Transaction.TransactionType getType();
+
+    String getCategory();
+
+    BigDecimal getMonthAmount();
+
+    Long getMonthCount();
+}
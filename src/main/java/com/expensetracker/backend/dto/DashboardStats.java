@@ -1,7 +1,5 @@
 package com.expensetracker.backend.dto;
 
-import com.expensetracker.backend.model.Transaction; // <-- 1. THÊM IMPORT
-
 import java.math.BigDecimal;
 import java.util.List;
 
@@ -11,12 +9,12 @@ public class DashboardStats {
     private BigDecimal currentBalance;
     private List<MonthlyData> monthlyData;
     private List<CategoryExpense> expenseByCategory;
-    private List<Transaction> recentTransactions; // <-- 2. THÊM TRƯỜNG MỚI
+    private List<TransactionListItem> recentTransactions; // <-- 2. THÊM TRƯỜNG MỚI
 
     // Constructor, getters, setters
 
     // <-- 3. CẬP NHẬT CONSTRUCTOR ĐỂ NHẬN THAM SỐ THỨ 6 -->
-    public DashboardStats(BigDecimal totalIncome, BigDecimal totalExpenses, BigDecimal currentBalance, List<MonthlyData> monthlyData, List<CategoryExpense> expenseByCategory, List<Transaction> recentTransactions) {
+    public DashboardStats(BigDecimal totalIncome, BigDecimal totalExpenses, BigDecimal currentBalance, List<MonthlyData> monthlyData, List<CategoryExpense> expenseByCategory, List<TransactionListItem> recentTransactions) {
         this.totalIncome = totalIncome;
         this.totalExpenses = totalExpenses;
         this.currentBalance = currentBalance;
@@ -28,11 +26,11 @@ public class DashboardStats {
     public DashboardStats() {}
 
     // --- 4. THÊM GETTER VÀ SETTER CHO TRƯỜNG MỚI ---
-    public List<Transaction> getRecentTransactions() {
+    public List<TransactionListItem> getRecentTransactions() {
         return recentTransactions;
     }
 
-    public void setRecentTransactions(List<Transaction> recentTransactions) {
+    public void setRecentTransactions(List<TransactionListItem> recentTransactions) {
         this.recentTransactions = recentTransactions;
     }
     // ----------------------------------------------------
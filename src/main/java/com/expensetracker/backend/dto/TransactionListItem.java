@@ -0,0 +1,32 @@
+package com.expensetracker.backend.dto;
+
+import com.expensetracker.backend.model.Transaction;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Bản ghi chỉ-đọc cho danh sách giao dịch và "giao dịch gần đây" trên dashboard.
+ * Được tạo trực tiếp bằng constructor expression trong JPQL/Criteria nên không
+ * sinh entity được quản lý và không đụng tới persistence context.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionListItem {
+    private UUID id;
+    private String title;
+    private BigDecimal amount;
+    private LocalDate date;
+    private String category;
+    private Transaction.TransactionType type;
+
+    @JsonIgnore
+    private LocalDateTime createdAt; // Chỉ dùng để tạo cursor keyset, không trả về cho client
+}
@@ -1,8 +1,10 @@
 package com.expensetracker.backend.exception;
 
 import com.expensetracker.backend.payload.response.MessageResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
@@ -14,4 +16,23 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.FORBIDDEN)
                 .body(new MessageResponse(ex.getMessage()));
     }
+
+    // Pool băm mật khẩu đang quá tải: trả lỗi nhanh để client thử lại sau
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<MessageResponse> handlePasswordHashingBusyException(PasswordHashingBusyException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new MessageResponse(ex.getMessage()));
+    }
+
+    // DaoAuthenticationProvider bọc lỗi không phải AuthenticationException của lúc tải người dùng
+    // trong InternalAuthenticationServiceException; pool băm quá tải vẫn phải trả 503 chứ không phải 401
+    @ExceptionHandler(InternalAuthenticationServiceException.class)
+    public ResponseEntity<MessageResponse> handleInternalAuthenticationServiceException(
+            InternalAuthenticationServiceException ex) {
+        if (ex.getCause() instanceof PasswordHashingBusyException busy) {
+            return handlePasswordHashingBusyException(busy);
+        }
+        throw ex; // Để Spring Security xử lý như trước (401)
+    }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.expensetracker.backend.exception;
+
+/**
+ * Pool băm mật khẩu đã đầy (hoặc chờ quá lâu): request được từ chối ngay với 503 thay vì chiếm luồng Tomcat.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
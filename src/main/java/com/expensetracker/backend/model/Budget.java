@@ -38,7 +38,9 @@ public class Budget {
     private BigDecimal amount; // Số tiền ngân sách
 
     // --- TRƯỜNG MỚI ĐƯỢC THÊM ---
-    @Column(nullable = false, precision = 10, scale = 2)
+    // Chỉ được ghi khi tạo mới; sau đó chỉ thay đổi qua BudgetRepository.incrementSpentAmount,
+    // để việc lưu entity (VD: đổi số tiền ngân sách) không ghi đè các khoản cộng dồn song song
+    @Column(nullable = false, precision = 10, scale = 2, updatable = false)
     @Builder.Default
     private BigDecimal spentAmount = BigDecimal.ZERO; // Số tiền đã chi tiêu
 
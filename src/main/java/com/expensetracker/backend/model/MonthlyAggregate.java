@@ -0,0 +1,55 @@
+package com.expensetracker.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Bảng tổng hợp theo tháng: tổng tiền và số giao dịch của mỗi (người dùng, năm, tháng, loại, danh mục).
+ * Được cập nhật trong cùng transaction với mỗi thay đổi giao dịch, để dashboard không phải quét bảng transactions.
+ */
+@Entity
+@Table(name = "monthly_aggregates", uniqueConstraints = {
+        @UniqueConstraint(columnNames = {"user_id", "year", "month", "type", "category"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MonthlyAggregate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    @JsonIgnore
+    private User user;
+
+    @Column(nullable = false)
+    private int year;
+
+    @Column(nullable = false)
+    private int month; // 1-12
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Transaction.TransactionType type;
+
+    @Column(nullable = false)
+    private String category;
+
+    @Column(name = "total_amount", nullable = false, precision = 15, scale = 2)
+    @Builder.Default
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+
+    @Column(name = "transaction_count", nullable = false)
+    private long transactionCount;
+}
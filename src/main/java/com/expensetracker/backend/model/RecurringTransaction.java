@@ -62,6 +62,16 @@ public class RecurringTransaction {
     @Builder.Default
     private boolean isActive = true;
 
+    // "Giữ chỗ" (lease) khi nhiều worker/nhiều server cùng chạy bộ lập lịch:
+    // worker nào ghi được claimToken của mình thì độc quyền xử lý tác vụ cho đến claimExpiresAt
+    @Column(name = "claim_token")
+    @JsonIgnore
+    private UUID claimToken;
+
+    @Column(name = "claim_expires_at")
+    @JsonIgnore
+    private LocalDateTime claimExpiresAt;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
     @Column(name = "updated_at")
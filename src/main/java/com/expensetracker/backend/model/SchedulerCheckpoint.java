@@ -0,0 +1,48 @@
+package com.expensetracker.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Tiến độ của một job xử lý theo khối: được ghi sau mỗi khối, nên sau khi server sập
+ * hoặc job dừng vì hết thời gian, lần chạy sau tiếp tục từ lastProcessedId (VD: đối soát ngân sách).
+ */
+@Entity
+@Table(name = "scheduler_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SchedulerCheckpoint {
+
+    @Id
+    @Column(name = "job_name", length = 100)
+    private String jobName;
+
+    // Ngày nghiệp vụ của lần chạy gần nhất
+    @Column(name = "run_date", nullable = false)
+    private LocalDate runDate;
+
+    // Id lớn nhất đã xử lý xong; null nghĩa là chưa xử lý khối nào
+    @Column(name = "last_processed_id")
+    private UUID lastProcessedId;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        this.updatedAt = LocalDateTime.now();
+    }
+}
@@ -13,7 +13,10 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        // Phục vụ các truy vấn dashboard theo khoảng ngày của một người dùng
+        @Index(name = "idx_transactions_user_date", columnList = "user_id, date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
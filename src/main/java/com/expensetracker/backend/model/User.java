@@ -18,6 +18,8 @@ import java.time.LocalDateTime;
 @Builder
 public class User {
 
+    public static final String DEFAULT_TIME_ZONE = "UTC";
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     @Column(name = "id", updatable = false, nullable = false)
@@ -41,11 +43,26 @@ public class User {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Phiên bản dữ liệu, tăng sau mỗi thao tác ghi giao dịch/ngân sách; dùng làm ETag cho các API đọc.
+    // Chỉ được thay đổi bằng câu UPDATE nguyên tử (UserRepository.incrementDataVersion), không qua entity
+    @Column(name = "data_version", insertable = false, updatable = false,
+            columnDefinition = "bigint default 0 not null")
+    private long dataVersion;
+
+    // Múi giờ IANA của người dùng (vd "Asia/Ho_Chi_Minh"); giao dịch định kỳ được sinh theo ngày địa phương.
+    // Để trống khi tạo thì mặc định là UTC
+    @Column(name = "time_zone", nullable = false, length = 64,
+            columnDefinition = "varchar(64) default 'UTC' not null")
+    private String timeZone;
+
 
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
+        if (this.timeZone == null) {
+            this.timeZone = DEFAULT_TIME_ZONE;
+        }
     }
 
     @PreUpdate
@@ -23,4 +23,8 @@ public class SignupRequest {
     @NotBlank
     @Size(min = 6, max = 40, message = "Password must be between 6 and 40 characters")
     private String password;
+
+    // Tùy chọn: múi giờ IANA (vd "Asia/Ho_Chi_Minh"), mặc định UTC
+    @Size(max = 64)
+    private String timeZone;
 }
\ No newline at end of file
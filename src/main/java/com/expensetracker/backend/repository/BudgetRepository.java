@@ -1,9 +1,19 @@
 package com.expensetracker.backend.repository;
 
 import com.expensetracker.backend.model.Budget;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -19,4 +29,39 @@ public interface BudgetRepository extends JpaRepository<Budget, UUID> {
 
     // Dùng để xóa (kiểm tra quyền sở hữu)
     Optional<Budget> findByIdAndUser_Id(UUID id, UUID userId);
+
+    /**
+     * Cộng dồn số tiền đã chi ngay trong database (một câu UPDATE nguyên tử, không đọc-sửa-ghi),
+     * nên các giao dịch chạy song song không làm mất cập nhật của nhau.
+     * Trả về 0 nếu người dùng chưa đặt ngân sách cho danh mục/tháng đó.
+     */
+    @Modifying
+    @Query("UPDATE Budget b SET b.spentAmount = b.spentAmount + :delta, b.updatedAt = :now " +
+            "WHERE b.user.id = :userId AND b.category = :category AND b.month = :month AND b.year = :year")
+    int incrementSpentAmount(@Param("userId") UUID userId, @Param("category") String category,
+                             @Param("month") int month, @Param("year") int year,
+                             @Param("delta") BigDecimal delta, @Param("now") LocalDateTime now);
+
+    /**
+     * Đối soát theo tập hợp: MỘT câu UPDATE ghi lại số đã chi của cả nhóm ngân sách
+     * từ tổng chi thực tế trong khoảng [start, end), thay vì một câu UPDATE cho mỗi ngân sách.
+     */
+    @Modifying
+    @Query("UPDATE Budget b SET b.spentAmount = COALESCE((SELECT SUM(t.amount) FROM Transaction t " +
+            "WHERE t.user.id = b.user.id AND t.category = b.category AND t.type = 'expense' " +
+            "AND t.date >= :start AND t.date < :end), 0), b.updatedAt = :now WHERE b.id IN :ids")
+    int recomputeSpentAmounts(@Param("ids") Collection<UUID> ids, @Param("start") LocalDate start,
+                              @Param("end") LocalDate end, @Param("now") LocalDateTime now);
+
+    // Duyệt theo khối (keyset) những người dùng có ngân sách trong tháng
+    @Query("SELECT DISTINCT b.user.id FROM Budget b " +
+            "WHERE b.month = :month AND b.year = :year AND b.user.id > :after ORDER BY b.user.id")
+    List<UUID> findUserIdsWithBudgetsAfter(@Param("month") int month, @Param("year") int year,
+                                           @Param("after") UUID after, Pageable pageable);
+
+    // Khóa ngân sách của khối người dùng trong lúc đối soát để không ghi đè các khoản cộng dồn đang diễn ra
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Budget b WHERE b.user.id IN :userIds AND b.month = :month AND b.year = :year")
+    List<Budget> findForUpdateByUserIdsAndMonth(@Param("userIds") Collection<UUID> userIds,
+                                                @Param("month") int month, @Param("year") int year);
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.expensetracker.backend.repository;
+
+import com.expensetracker.backend.dto.CategoryTotalView;
+import com.expensetracker.backend.dto.DashboardAggregateView;
+import com.expensetracker.backend.model.MonthlyAggregate;
+import com.expensetracker.backend.model.Transaction;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface MonthlyAggregateRepository extends JpaRepository<MonthlyAggregate, UUID> {
+
+    /**
+     * Truy vấn dashboard gộp trong một câu lệnh: tổng của tháng theo từng (loại, danh mục).
+     * Số dư lũy kế được đọc riêng từ bảng user_balances nên không cần quét toàn bộ lịch sử.
+     */
+    @Query("SELECT a.type AS type, a.category AS category, " +
+            "SUM(a.totalAmount) AS monthAmount, SUM(a.transactionCount) AS monthCount " +
+            "FROM MonthlyAggregate a WHERE a.user.id = :userId AND a.year = :year AND a.month = :month " +
+            "GROUP BY a.type, a.category")
+    List<DashboardAggregateView> findDashboardAggregates(@Param("userId") UUID userId,
+                                                         @Param("month") int month, @Param("year") int year);
+
+    /**
+     * Tổng theo danh mục của một loại giao dịch trong khoảng tháng [fromMonth, toMonth],
+     * mỗi tháng được mã hóa thành year * 12 + month.
+     */
+    @Query("SELECT a.category AS category, SUM(a.totalAmount) AS total FROM MonthlyAggregate a " +
+            "WHERE a.user.id = :userId AND a.type = :type " +
+            "AND a.year * 12 + a.month BETWEEN :fromMonth AND :toMonth GROUP BY a.category")
+    List<CategoryTotalView> sumByCategoryBetween(@Param("userId") UUID userId,
+                                                 @Param("type") Transaction.TransactionType type,
+                                                 @Param("fromMonth") int fromMonth, @Param("toMonth") int toMonth);
+
+    List<MonthlyAggregate> findByUser_IdIn(Collection<UUID> userIds);
+
+    // Khóa các dòng tổng hợp hiện có của khối người dùng khi dựng lại (thao tác ghi đang cộng dồn phải commit trước)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM MonthlyAggregate a WHERE a.user.id IN :userIds " +
+            "ORDER BY a.user.id, a.year, a.month, a.type, a.category")
+    List<MonthlyAggregate> findForUpdateByUserIds(@Param("userIds") Collection<UUID> userIds);
+
+    /**
+     * Cộng dồn tại chỗ trong database; trả về 0 nếu dòng tổng hợp chưa tồn tại.
+     */
+    @Modifying
+    @Query("UPDATE MonthlyAggregate a SET a.totalAmount = a.totalAmount + :amount, a.transactionCount = a.transactionCount + :count " +
+            "WHERE a.user.id = :userId AND a.year = :year AND a.month = :month AND a.type = :type AND a.category = :category")
+    int applyDelta(@Param("userId") UUID userId, @Param("year") int year, @Param("month") int month,
+                   @Param("type") Transaction.TransactionType type, @Param("category") String category,
+                   @Param("amount") BigDecimal amount, @Param("count") long count);
+
+    /**
+     * Chèn dòng tổng hợp nếu chưa có; trả về 0 nếu một transaction khác vừa chèn cùng khóa
+     * (ON CONFLICT DO NOTHING chờ transaction kia commit thay vì làm hỏng transaction hiện tại).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO monthly_aggregates (id, user_id, year, month, type, category, total_amount, transaction_count) " +
+            "VALUES (:id, :userId, :year, :month, :type, :category, :amount, :count) ON CONFLICT DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id, @Param("userId") UUID userId, @Param("year") int year, @Param("month") int month,
+                       @Param("type") String type, @Param("category") String category,
+                       @Param("amount") BigDecimal amount, @Param("count") long count);
+
+    @Modifying
+    @Query("DELETE FROM MonthlyAggregate a WHERE a.user.id IN :userIds")
+    int deleteByUserIds(@Param("userIds") Collection<UUID> userIds);
+}
@@ -1,10 +1,18 @@
 package com.expensetracker.backend.repository;
 
 import com.expensetracker.backend.model.RecurringTransaction;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -14,6 +22,8 @@ public interface RecurringTransactionRepository extends JpaRepository<RecurringT
 
     List<RecurringTransaction> findByUser_Id(UUID userId);
 
+    List<RecurringTransaction> findByUser_IdAndIsActiveTrue(UUID userId);
+
     Optional<RecurringTransaction> findByIdAndUser_Id(UUID id, UUID userId);
 
     // Tối ưu hóa cho việc xóa
@@ -21,4 +31,49 @@ public interface RecurringTransactionRepository extends JpaRepository<RecurringT
 
     // Phương thức cốt lõi cho bộ lập lịch
     List<RecurringTransaction> findByIsActiveTrueAndNextExecutionDateLessThanEqual(LocalDate date);
+
+    // Lấy các tác vụ đến hạn theo từng khối, sắp xếp theo id (keyset) để duyệt hết trong một lần chạy
+    // trong một phân vùng người dùng [fromUserId, toUserId], chỉ với người dùng thuộc các múi giờ :zones
+    @Query("SELECT r FROM RecurringTransaction r JOIN FETCH r.user " +
+            "WHERE r.isActive = true AND r.nextExecutionDate <= :date AND r.user.timeZone IN :zones " +
+            "AND r.user.id >= :fromUserId AND r.user.id <= :toUserId AND r.id > :after ORDER BY r.id")
+    List<RecurringTransaction> findDueAfter(@Param("date") LocalDate date, @Param("zones") Collection<String> zones,
+                                            @Param("fromUserId") UUID fromUserId, @Param("toUserId") UUID toUserId,
+                                            @Param("after") UUID after, Pageable pageable);
+
+    // Các múi giờ có tác vụ đến hạn tính đến ngày :date (ngày địa phương muộn nhất cần xét)
+    @Query("SELECT DISTINCT r.user.timeZone FROM RecurringTransaction r " +
+            "WHERE r.isActive = true AND r.nextExecutionDate <= :date")
+    List<String> findDueTimeZones(@Param("date") LocalDate date);
+
+    // --- Chế độ nhiều worker: giữ chỗ theo lease ---
+
+    // Ứng viên: tác vụ đến hạn chưa bị worker nào giữ, hoặc lease đã hết hạn (worker cũ đã chết)
+    @Query("SELECT r.id FROM RecurringTransaction r WHERE r.isActive = true AND r.nextExecutionDate <= :date " +
+            "AND r.user.timeZone IN :zones " +
+            "AND (r.claimExpiresAt IS NULL OR r.claimExpiresAt < :now) ORDER BY r.id")
+    List<UUID> findClaimableIds(@Param("date") LocalDate date, @Param("zones") Collection<String> zones,
+                                @Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Giữ chỗ có điều kiện: điều kiện được kiểm tra lại trong chính câu UPDATE,
+     * nên khi hai worker tranh cùng một dòng, chỉ một worker ghi được token của mình.
+     */
+    @Modifying
+    @Query("UPDATE RecurringTransaction r SET r.claimToken = :token, r.claimExpiresAt = :expiresAt " +
+            "WHERE r.id IN :ids AND r.isActive = true AND r.nextExecutionDate <= :date " +
+            "AND (r.claimExpiresAt IS NULL OR r.claimExpiresAt < :now)")
+    int claim(@Param("ids") Collection<UUID> ids, @Param("token") UUID token, @Param("expiresAt") LocalDateTime expiresAt,
+              @Param("date") LocalDate date, @Param("now") LocalDateTime now);
+
+    @Query("SELECT r.id FROM RecurringTransaction r WHERE r.claimToken = :token ORDER BY r.id")
+    List<UUID> findIdsByClaimToken(@Param("token") UUID token);
+
+    // Khóa các dòng đang giữ trong lúc xử lý: lease có hết hạn giữa chừng thì worker khác cũng phải chờ commit
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM RecurringTransaction r WHERE r.claimToken = :token ORDER BY r.id")
+    List<RecurringTransaction> findClaimedForUpdate(@Param("token") UUID token);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<RecurringTransaction> findByIdAndClaimToken(UUID id, UUID claimToken);
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.expensetracker.backend.repository;
+
+import com.expensetracker.backend.model.SchedulerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SchedulerCheckpointRepository extends JpaRepository<SchedulerCheckpoint, String> {
+}
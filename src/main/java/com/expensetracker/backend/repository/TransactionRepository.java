@@ -1,5 +1,6 @@
 package com.expensetracker.backend.repository;
 
+import com.expensetracker.backend.dto.TransactionListItem;
 import com.expensetracker.backend.model.Transaction;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -8,6 +9,9 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -15,22 +19,55 @@ import java.math.BigDecimal;
 import java.util.Map;
 
 @Repository
-public interface TransactionRepository extends JpaRepository<Transaction, UUID>, JpaSpecificationExecutor<Transaction> {
+public interface TransactionRepository extends JpaRepository<Transaction, UUID>, JpaSpecificationExecutor<Transaction>,
+        TransactionRepositoryCustom {
 
     // --- CÁC PHƯƠNG THỨC MỚI CHO DASHBOARD THEO THÁNG ---
+    // Các truy vấn lọc theo khoảng [start, end) trên cột date để index (user_id, date) được sử dụng.
+    // Không dùng EXTRACT(month/year FROM t.date) trong WHERE vì B-tree index không phục vụ được.
 
-    @Query("SELECT COALESCE(SUM(t.amount), 0.0) FROM Transaction t WHERE t.user.id = :userId AND t.type = :type AND EXTRACT(month FROM t.date) = :month AND EXTRACT(year FROM t.date) = :year")
-    BigDecimal sumAmountByTypeAndMonthAndYear(@Param("userId") UUID userId, @Param("type") Transaction.TransactionType type, @Param("month") int month, @Param("year") int year);
+    @Query("SELECT COALESCE(SUM(t.amount), 0.0) FROM Transaction t WHERE t.user.id = :userId AND t.type = :type AND t.date >= :start AND t.date < :end")
+    BigDecimal sumAmountByTypeAndDateRange(@Param("userId") UUID userId, @Param("type") Transaction.TransactionType type, @Param("start") LocalDate start, @Param("end") LocalDate end);
 
     @Query("SELECT new map(t.category as category, SUM(t.amount) as amount) " +
             "FROM Transaction t " +
-            "WHERE t.user.id = :userId AND t.type = 'expense' AND EXTRACT(month FROM t.date) = :month AND EXTRACT(year FROM t.date) = :year " +
+            "WHERE t.user.id = :userId AND t.type = 'expense' AND t.date >= :start AND t.date < :end " +
             "GROUP BY t.category ORDER BY SUM(t.amount) DESC")
-    List<Map<String, Object>> findExpenseByCategoryAndMonthAndYear(@Param("userId") UUID userId, @Param("month") int month, @Param("year") int year);
+    List<Map<String, Object>> findExpenseByCategoryAndDateRange(@Param("userId") UUID userId, @Param("start") LocalDate start, @Param("end") LocalDate end);
 
     // --- SỬA LỖI Ở ĐÂY: Đảm bảo câu truy vấn không lọc theo loại giao dịch ---
-    @Query("SELECT t FROM Transaction t WHERE t.user.id = :userId AND EXTRACT(month FROM t.date) = :month AND EXTRACT(year FROM t.date) = :year ORDER BY t.date DESC, t.createdAt DESC")
-    List<Transaction> findRecentTransactionsByMonthAndYear(@Param("userId") UUID userId, @Param("month") int month, @Param("year") int year, Pageable pageable);
+    @Query("SELECT new com.expensetracker.backend.dto.TransactionListItem(t.id, t.title, t.amount, t.date, t.category, t.type, t.createdAt) " +
+            "FROM Transaction t WHERE t.user.id = :userId AND t.date >= :start AND t.date < :end ORDER BY t.date DESC, t.createdAt DESC")
+    List<TransactionListItem> findRecentTransactionsByDateRange(@Param("userId") UUID userId, @Param("start") LocalDate start, @Param("end") LocalDate end, Pageable pageable);
+
+    default BigDecimal sumAmountByTypeAndMonthAndYear(UUID userId, Transaction.TransactionType type, int month, int year) {
+        YearMonth ym = YearMonth.of(year, month);
+        return sumAmountByTypeAndDateRange(userId, type, monthStart(ym), nextMonthStart(ym));
+    }
+
+    default List<Map<String, Object>> findExpenseByCategoryAndMonthAndYear(UUID userId, int month, int year) {
+        YearMonth ym = YearMonth.of(year, month);
+        return findExpenseByCategoryAndDateRange(userId, monthStart(ym), nextMonthStart(ym));
+    }
+
+    default List<TransactionListItem> findRecentTransactionsByMonthAndYear(UUID userId, int month, int year, Pageable pageable) {
+        YearMonth ym = YearMonth.of(year, month);
+        return findRecentTransactionsByDateRange(userId, monthStart(ym), nextMonthStart(ym), pageable);
+    }
+
+    /**
+     * Ngày đầu tiên của tháng (cận dưới, bao gồm).
+     */
+    private static LocalDate monthStart(YearMonth ym) {
+        return ym.atDay(1);
+    }
+
+    /**
+     * Ngày đầu tiên của tháng kế tiếp (cận trên, không bao gồm).
+     */
+    private static LocalDate nextMonthStart(YearMonth ym) {
+        return ym.plusMonths(1).atDay(1);
+    }
 
 
     // --- CÁC PHƯƠNG THỨC CŨ HƠN (có thể đã tồn tại) ---
@@ -44,27 +81,62 @@ public interface TransactionRepository extends JpaRepository<Transaction, UUID>,
             "ORDER BY SUM(t.amount) DESC")
     List<Map<String, Object>> findExpenseByCategory(@Param("userId") UUID userId);
 
-    @Query("SELECT new map(FUNCTION('TO_CHAR', t.date, 'YYYY-MM') as month, " +
+    // Thu/chi theo tháng trong khoảng [start, end): quét theo khoảng trên chỉ mục (user_id, date),
+    // chỉ trả về các tháng có giao dịch (phần lấp chỗ trống làm ở DashboardService)
+    @Query("SELECT new map(YEAR(t.date) as year, MONTH(t.date) as month, " +
             "SUM(CASE WHEN t.type = 'income' THEN t.amount ELSE 0 END) as income, " +
             "SUM(CASE WHEN t.type = 'expense' THEN t.amount ELSE 0 END) as expenses) " +
             "FROM Transaction t " +
-            "WHERE t.user.id = :userId " +
-            "GROUP BY FUNCTION('TO_CHAR', t.date, 'YYYY-MM') " +
-            "ORDER BY FUNCTION('TO_CHAR', t.date, 'YYYY-MM') ASC")
-    List<Map<String, Object>> findMonthlySummary(@Param("userId") UUID userId);
+            "WHERE t.user.id = :userId AND t.date >= :start AND t.date < :end " +
+            "GROUP BY YEAR(t.date), MONTH(t.date)")
+    List<Map<String, Object>> findMonthlySummary(@Param("userId") UUID userId,
+                                                 @Param("start") LocalDate start, @Param("end") LocalDate end);
 
     @Query("SELECT new map(t.category as category, SUM(t.amount) as spent) " +
             "FROM Transaction t " +
             "WHERE t.user.id = :userId AND t.type = 'expense' " +
-            "AND EXTRACT(YEAR FROM t.date) = :year " +
-            "AND EXTRACT(MONTH FROM t.date) = :month " +
+            "AND t.date >= :start AND t.date < :end " +
             "GROUP BY t.category")
-    List<Map<String, Object>> findExpenseSumByCategoryAndMonthYear(
+    List<Map<String, Object>> findExpenseSumByCategoryAndDateRange(
             @Param("userId") UUID userId,
-            @Param("month") int month,
-            @Param("year") int year
+            @Param("start") LocalDate start,
+            @Param("end") LocalDate end
     );
 
+    default List<Map<String, Object>> findExpenseSumByCategoryAndMonthYear(UUID userId, int month, int year) {
+        YearMonth ym = YearMonth.of(year, month);
+        return findExpenseSumByCategoryAndDateRange(userId, monthStart(ym), nextMonthStart(ym));
+    }
+
+    // Tổng chi của một danh mục trong khoảng ngày, dùng để khởi tạo spentAmount cho ngân sách mới
+    @Query("SELECT COALESCE(SUM(t.amount), 0.0) FROM Transaction t " +
+            "WHERE t.user.id = :userId AND t.type = 'expense' AND t.category = :category " +
+            "AND t.date >= :start AND t.date < :end")
+    BigDecimal sumExpenseByCategoryAndDateRange(@Param("userId") UUID userId, @Param("category") String category,
+                                                @Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    // Tổng chi theo (người dùng, danh mục) cho một khối người dùng, dùng cho job đối soát ngân sách
+    @Query("SELECT t.user.id, t.category, SUM(t.amount) FROM Transaction t " +
+            "WHERE t.user.id IN :userIds AND t.type = 'expense' AND t.date >= :start AND t.date < :end " +
+            "GROUP BY t.user.id, t.category")
+    List<Object[]> sumExpenseByUserIdsAndCategory(@Param("userIds") Collection<UUID> userIds,
+                                                  @Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    // Tổng hợp trực tiếp từ bảng transactions, dùng để dựng lại/kiểm tra bảng monthly_aggregates
+    @Query("SELECT t.user.id, YEAR(t.date), MONTH(t.date), t.type, t.category, SUM(t.amount), COUNT(t) " +
+            "FROM Transaction t WHERE t.user.id IN :userIds " +
+            "GROUP BY t.user.id, YEAR(t.date), MONTH(t.date), t.type, t.category")
+    List<Object[]> aggregateMonthlyByUserIds(@Param("userIds") Collection<UUID> userIds);
+
+    // Số dư lũy kế tính trực tiếp (thu - chi), dùng để khởi tạo/đối soát bảng user_balances
+    @Query("SELECT COALESCE(SUM(CASE WHEN t.type = 'income' THEN t.amount ELSE -t.amount END), 0.0) " +
+            "FROM Transaction t WHERE t.user.id = :userId")
+    BigDecimal sumBalanceByUserId(@Param("userId") UUID userId);
+
+    @Query("SELECT t.user.id, SUM(CASE WHEN t.type = 'income' THEN t.amount ELSE -t.amount END) " +
+            "FROM Transaction t WHERE t.user.id IN :userIds GROUP BY t.user.id")
+    List<Object[]> sumBalanceByUserIds(@Param("userIds") Collection<UUID> userIds);
+
     Optional<Transaction> findByIdAndUserId(UUID id, UUID userId);
     Page<Transaction> findByUser_Id(UUID userId, Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.expensetracker.backend.repository;
+
+import com.expensetracker.backend.dto.TransactionListItem;
+import com.expensetracker.backend.model.Transaction;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Các truy vấn chỉ-đọc trả về projection thay vì entity, vẫn nhận Specification
+ * từ TransactionSpecifications để dùng chung bộ lọc.
+ */
+public interface TransactionRepositoryCustom {
+
+    Page<TransactionListItem> findListItems(Specification<Transaction> spec, Pageable pageable);
+
+    List<TransactionListItem> findListItems(Specification<Transaction> spec, Sort sort, int limit);
+
+    /**
+     * Đọc tuần tự từ con trỏ của database với fetch size cho trước.
+     * Phải được gọi và tiêu thụ hết trong một transaction, và phải đóng Stream sau khi dùng.
+     */
+    Stream<TransactionListItem> streamListItems(Specification<Transaction> spec, Sort sort, int fetchSize);
+}
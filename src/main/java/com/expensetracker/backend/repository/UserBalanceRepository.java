@@ -0,0 +1,40 @@
+package com.expensetracker.backend.repository;
+
+import com.expensetracker.backend.model.UserBalance;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface UserBalanceRepository extends JpaRepository<UserBalance, UUID> {
+
+    /**
+     * Cộng dồn tại chỗ trong database; trả về 0 nếu người dùng chưa có dòng số dư.
+     */
+    @Modifying
+    @Query("UPDATE UserBalance b SET b.balance = b.balance + :delta, b.updatedAt = :now WHERE b.userId = :userId")
+    int applyDelta(@Param("userId") UUID userId, @Param("delta") BigDecimal delta, @Param("now") LocalDateTime now);
+
+    /**
+     * Chèn dòng số dư nếu chưa có; trả về 0 nếu một transaction khác vừa chèn trước.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_balances (user_id, balance, updated_at) VALUES (:userId, :balance, :now) " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") UUID userId, @Param("balance") BigDecimal balance, @Param("now") LocalDateTime now);
+
+    // Khóa các dòng số dư trong lúc đối soát để không ghi đè thay đổi đang diễn ra
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM UserBalance b WHERE b.userId IN :userIds")
+    List<UserBalance> findAllForUpdate(@Param("userIds") Collection<UUID> userIds);
+}
@@ -1,9 +1,17 @@
 package com.expensetracker.backend.repository;
 
 import com.expensetracker.backend.model.User;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -16,4 +24,27 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    // Duyệt id người dùng theo từng khối (keyset) cho các job xử lý hàng loạt
+    @Query("SELECT u.id FROM User u WHERE u.id > :after ORDER BY u.id")
+    List<UUID> findIdsAfter(@Param("after") UUID after, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE User u SET u.dataVersion = u.dataVersion + 1 WHERE u.id = :userId")
+    int incrementDataVersion(@Param("userId") UUID userId);
+
+    @Modifying
+    @Query("UPDATE User u SET u.dataVersion = u.dataVersion + 1 WHERE u.id IN :userIds")
+    int incrementDataVersions(@Param("userIds") Collection<UUID> userIds);
+
+    // Khóa dòng người dùng: cùng dòng mà mọi thao tác ghi giao dịch khóa sau cùng (khi tăng data_version)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u.id FROM User u WHERE u.id IN :userIds ORDER BY u.id")
+    List<UUID> lockByIds(@Param("userIds") Collection<UUID> userIds);
+
+    @Query("SELECT u.timeZone FROM User u WHERE u.id = :userId")
+    Optional<String> findTimeZoneById(@Param("userId") UUID userId);
+
+    @Query("SELECT u.dataVersion FROM User u WHERE u.id = :userId")
+    Optional<Long> findDataVersionById(@Param("userId") UUID userId);
 }
\ No newline at end of file
@@ -2,8 +2,13 @@ package com.expensetracker.backend.security;
 
 import com.expensetracker.backend.security.jwt.AuthEntryPointJwt;
 import com.expensetracker.backend.security.jwt.AuthTokenFilter;
+import com.expensetracker.backend.security.jwt.JwtKeyProperties;
 import com.expensetracker.backend.security.services.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -20,11 +25,13 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 
 @Configuration
 @EnableMethodSecurity
+@EnableConfigurationProperties(JwtKeyProperties.class)
 public class WebSecurityConfig {
 
     @Autowired
@@ -33,6 +40,19 @@ public class WebSecurityConfig {
     @Autowired
     private AuthEntryPointJwt unauthorizedHandler;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Pool băm mật khẩu: số luồng, số tác vụ được xếp hàng, và thời gian chờ tối đa trước khi trả 503
+    @Value("${security.password-hashing.threads:2}")
+    private int passwordHashingThreads;
+
+    @Value("${security.password-hashing.queue-capacity:32}")
+    private int passwordHashingQueueCapacity;
+
+    @Value("${security.password-hashing.max-wait:500ms}")
+    private Duration passwordHashingMaxWait;
+
     @Bean
     public AuthTokenFilter authenticationJwtTokenFilter() {
         return new AuthTokenFilter();
@@ -40,7 +60,8 @@ public class WebSecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), passwordHashingThreads,
+                passwordHashingQueueCapacity, passwordHashingMaxWait, meterRegistry);
     }
 
     @Bean
@@ -92,6 +113,8 @@ public class WebSecurityConfig {
                 .exceptionHandling(ex -> ex.authenticationEntryPoint(unauthorizedHandler))
                 .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Lượt dispatch async (vd. export) thuộc request đã được xác thực; filter JWT không chạy lại ở lượt này
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll() // cho phép signin/signup/refresh
                         .requestMatchers("/actuator/health").permitAll()
                         .anyRequest().authenticated()
@@ -1,6 +1,9 @@
 package com.expensetracker.backend.security.jwt;
 
+import com.expensetracker.backend.security.services.PrincipalCache;
+import com.expensetracker.backend.security.services.UserDetailsImpl;
 import com.expensetracker.backend.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -16,6 +19,7 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 import java.util.UUID; // Thêm import này
 
 public class AuthTokenFilter extends OncePerRequestFilter {
@@ -26,6 +30,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private PrincipalCache principalCache;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
     /**
@@ -37,14 +44,17 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
+            // Xác minh chữ ký đúng một lần và lấy claims
+            Optional<Claims> claims = jwt != null ? jwtUtils.parseVerifiedClaims(jwt) : Optional.empty();
 
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
+            if (claims.isPresent()) {
                 // 1. Lấy User ID (dạng chuỗi) từ token
-                String userIdStr = jwtUtils.getUserIdFromJwtToken(jwt);
-                UUID userId = UUID.fromString(userIdStr); // Chuyển đổi về UUID
+                UUID userId = UUID.fromString(claims.get().getSubject()); // Chuyển đổi về UUID
 
-                // 2. Tải UserDetails bằng ID
-                UserDetails userDetails = userDetailsService.loadUserById(userId);
+                // 2. Dựng UserDetails từ claims; token cũ (không có claims) hoặc phát hành trước khi người dùng
+                // bị sửa/xóa thì tải bằng ID, chỉ truy vấn database khi cache chưa có
+                UserDetails userDetails = principalFromClaims(userId, claims.get())
+                        .orElseGet(() -> principalCache.get(userId, userDetailsService::loadUserById));
 
                 // 3. Tạo đối tượng Authentication
                 // Đối tượng này chứa đầy đủ thông tin UserDetails (bao gồm cả ID và username)
@@ -63,6 +73,16 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private Optional<UserDetailsImpl> principalFromClaims(UUID userId, Claims claims) {
+        String username = claims.get(JwtUtils.CLAIM_USERNAME, String.class);
+        String email = claims.get(JwtUtils.CLAIM_EMAIL, String.class);
+        if (username == null || email == null || claims.getIssuedAt() == null
+                || principalCache.changedSince(userId, claims.getIssuedAt().toInstant())) {
+            return Optional.empty();
+        }
+        return Optional.of(UserDetailsImpl.withoutCredentials(userId, username, email));
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
         if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
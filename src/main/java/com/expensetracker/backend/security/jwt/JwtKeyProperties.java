@@ -0,0 +1,33 @@
+package com.expensetracker.backend.security.jwt;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Các khóa ký JWT bổ sung (ngoài jwt.secret, có kid "default"), liệt kê từ cũ đến mới:
+ * <pre>
+ * jwt.keys[0].id=2025-10
+ * jwt.keys[0].secret=${JWT_SECRET_2025_10}
+ * jwt.keys[0].accept-until=2025-11-01T00:00:00Z   # tùy chọn: sau thời điểm này token ký bằng khóa này bị từ chối
+ * jwt.signing-key-id=2025-10                      # tùy chọn: mặc định là khóa cuối danh sách
+ * </pre>
+ */
+@Data
+@ConfigurationProperties(prefix = "jwt")
+public class JwtKeyProperties {
+
+    private List<SigningKey> keys = new ArrayList<>();
+
+    private String signingKeyId;
+
+    @Data
+    public static class SigningKey {
+        private String id;
+        private String secret;
+        private Instant acceptUntil;
+    }
+}
@@ -1,17 +1,34 @@
 package com.expensetracker.backend.security.jwt;
 
+import com.expensetracker.backend.model.User;
 import com.expensetracker.backend.security.services.UserDetailsImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 
 @Component
 public class JwtUtils {
@@ -26,8 +43,108 @@ public class JwtUtils {
     @Value("${jwt.refresh.expiration.ms}")
     private long jwtRefreshExpirationMs;
 
+    // Claim phụ mang thông tin principal, để filter dựng principal mà không cần truy vấn database
+    public static final String CLAIM_USERNAME = "username";
+    public static final String CLAIM_EMAIL = "email";
+
+    // Số token đã xác minh được nhớ tối đa (0 = tắt cache)
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private long verifiedCacheMaxSize;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private JwtKeyProperties keyProperties;
+
+    // kid của jwt.secret; token cũ không có kid cũng được xác minh bằng khóa này
+    public static final String DEFAULT_KEY_ID = "default";
+
+    /**
+     * Keyset trong bộ nhớ: kid -> khóa. Token mới được ký bằng khóa mới nhất (hoặc jwt.signing-key-id),
+     * token ký bằng khóa cũ vẫn hợp lệ đến khi hết hạn hoặc đến accept-until của khóa đó,
+     * nên việc xoay khóa không đăng xuất mọi người cùng lúc. Xác minh chỉ tốn một lần tra map theo kid.
+     */
+    private Map<String, KeyEntry> keyset;
+    private String signingKeyId;
+
+    // Parser được tạo một lần (JwtParser bất biến, an toàn khi dùng từ nhiều luồng)
+    private JwtParser parser;
+
+    /**
+     * SHA-256 của token -> claims đã xác minh. Client gửi lại cùng access token trong suốt thời hạn của nó,
+     * nên lần sau chỉ cần một phép băm thay vì giải mã base64, parse JSON và tính HMAC.
+     * Mỗi mục hết hạn đúng lúc token hết hạn; chỉ token hợp lệ được lưu, và khóa là digest
+     * nên cache không giữ bản thân token.
+     */
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        Map<String, KeyEntry> keys = new LinkedHashMap<>();
+        keys.put(DEFAULT_KEY_ID, new KeyEntry(hmacKey(jwtSecret), null));
+        String newestKeyId = DEFAULT_KEY_ID;
+        if (keyProperties != null) {
+            for (JwtKeyProperties.SigningKey signingKey : keyProperties.getKeys()) {
+                if (signingKey.getId() == null || signingKey.getId().isBlank() || signingKey.getSecret() == null) {
+                    throw new IllegalStateException("Each jwt.keys entry needs an id and a secret");
+                }
+                if (keys.putIfAbsent(signingKey.getId(),
+                        new KeyEntry(hmacKey(signingKey.getSecret()), signingKey.getAcceptUntil())) != null) {
+                    throw new IllegalStateException("Duplicate JWT key id: " + signingKey.getId());
+                }
+                newestKeyId = signingKey.getId();
+            }
+            if (keyProperties.getSigningKeyId() != null) {
+                newestKeyId = keyProperties.getSigningKeyId();
+            }
+        }
+        if (!keys.containsKey(newestKeyId)) {
+            throw new IllegalStateException("Unknown jwt.signing-key-id: " + newestKeyId);
+        }
+        keyset = Map.copyOf(keys);
+        signingKeyId = newestKeyId;
+        logger.info("JWT keyset loaded: {} keys, signing with kid '{}'", keyset.size(), signingKeyId);
+
+        parser = Jwts.parserBuilder().setSigningKeyResolver(new SigningKeyResolverAdapter() {
+            @Override
+            public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                return verificationKey(header.getKeyId());
+            }
+        }).build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                .expireAfter(Expiry.creating((String digest, VerifiedToken token) -> untilExpiry(token.validUntil())))
+                .recordStats()
+                .build();
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt-verified");
+        }
+    }
+
+    private static Key hmacKey(String secret) {
+        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
     private Key key() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        return keyset.get(signingKeyId).key();
+    }
+
+    // Khóa xác minh theo kid; kid lạ hoặc khóa đã quá accept-until làm token không hợp lệ
+    private Key verificationKey(String keyId) {
+        KeyEntry entry = keyset.get(keyId != null ? keyId : DEFAULT_KEY_ID);
+        if (entry == null) {
+            throw new SignatureException("Unknown JWT key id: " + keyId);
+        }
+        if (entry.acceptUntil() != null && !Instant.now().isBefore(entry.acceptUntil())) {
+            throw new SignatureException("JWT key " + keyId + " is no longer accepted");
+        }
+        return entry.key();
+    }
+
+    // Mọi token mới mang kid của khóa ký hiện tại
+    private JwtBuilder newToken() {
+        return Jwts.builder().setHeaderParam(JwsHeader.KEY_ID, signingKeyId);
     }
 
     /**
@@ -43,8 +160,10 @@ public class JwtUtils {
         // Thêm log quan trọng để xác nhận code mới đang chạy
         logger.info("Attempting to generate token for user ID: {}", userIdAsString);
 
-        return Jwts.builder()
+        return newToken()
                 .setSubject(userIdAsString) // <-- Đảm bảo dòng này sử dụng ID, không phải getUsername()
+                .claim(CLAIM_USERNAME, userPrincipal.getUsername())
+                .claim(CLAIM_EMAIL, userPrincipal.getEmail())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtAccessExpirationMs))
                 .signWith(key(), SignatureAlgorithm.HS256)
@@ -55,16 +174,71 @@ public class JwtUtils {
      * Phương thức này lấy ID người dùng từ một token đã có.
      */
     public String getUserIdFromJwtToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key())
-                .build()
-                .parseClaimsJws(token)
+        return parser.parseClaimsJws(token)
                 .getBody()
                 .getSubject();
     }
 
+    /**
+     * Kiểm tra chữ ký/hạn của token đúng một lần và trả về claims; rỗng nếu token không hợp lệ.
+     * Thay cho cặp validateJwtToken + getUserIdFromJwtToken (vốn xác minh chữ ký hai lần).
+     */
+    public Optional<Claims> parseVerifiedClaims(String authToken) {
+        String digest = digest(authToken);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && cached.validUntil().isAfter(Instant.now())) {
+            return Optional.of(cached.claims());
+        }
+        try {
+            Jws<Claims> jws = parser.parseClaimsJws(authToken);
+            Claims claims = jws.getBody();
+            if (claims.getExpiration() != null) {
+                verifiedTokens.put(digest, new VerifiedToken(claims, validUntil(jws)));
+            }
+            return Optional.of(claims);
+        } catch (Exception e) {
+            // Log lỗi nếu token không hợp lệ
+            logger.error("Invalid JWT Token: {}", e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    // Mục cache hết hạn khi token hết hạn hoặc khi khóa ký của nó thôi được chấp nhận, tùy cái nào đến trước
+    private Instant validUntil(Jws<Claims> jws) {
+        Instant expiration = jws.getBody().getExpiration().toInstant();
+        String keyId = jws.getHeader().getKeyId();
+        Instant acceptUntil = keyset.get(keyId != null ? keyId : DEFAULT_KEY_ID).acceptUntil();
+        return acceptUntil != null && acceptUntil.isBefore(expiration) ? acceptUntil : expiration;
+    }
+
+    private static Duration untilExpiry(Instant validUntil) {
+        Duration remaining = Duration.between(Instant.now(), validUntil);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Token có kèm claim username/email (dùng khi làm mới token)
+    public String generateTokenFromUser(User user) {
+        return newToken()
+                .setSubject(user.getId().toString())
+                .claim(CLAIM_USERNAME, user.getUsername())
+                .claim(CLAIM_EMAIL, user.getEmail())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date((new Date()).getTime() + jwtAccessExpirationMs))
+                .signWith(key(), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
     public String generateTokenFromUserId(String userId) {
-        return Jwts.builder()
+        return newToken()
                 .setSubject(userId)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date((new Date()).getTime() + jwtAccessExpirationMs))
@@ -74,10 +248,7 @@ public class JwtUtils {
 
     public boolean validateJwtToken(String authToken) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key())
-                    .build()
-                    .parseClaimsJws(authToken);
+            parser.parseClaimsJws(authToken);
             return true;
         } catch (Exception e) {
             // Log lỗi nếu token không hợp lệ
@@ -85,4 +256,10 @@ public class JwtUtils {
         }
         return false;
     }
-}
\ No newline at end of file
+
+    private record KeyEntry(Key key, Instant acceptUntil) {
+    }
+
+    private record VerifiedToken(Claims claims, Instant validUntil) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.expensetracker.backend.security.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Cache principal của request đã xác thực bằng JWT, khóa theo user id, để AuthTokenFilter
+ * không phải truy vấn database ở mỗi request. Giới hạn kích thước và TTL (TTL cũng là độ trễ tối đa
+ * khi người dùng bị thay đổi ngoài UserService); hit/miss được đăng ký vào Micrometer với tag cache=principals.
+ * <p>
+ * Ngoài ra ghi nhớ thời điểm người dùng bị sửa/xóa (trong thời gian sống của access token), để filter
+ * không tin claims của token phát hành trước thay đổi đó mà nạp lại principal. Dấu này chỉ có trên server
+ * đã thực hiện thay đổi; các server khác dựa vào thời hạn của token (xem jwt.access.expiration.ms).
+ * Khi vượt quá giới hạn kích thước, dấu bị loại sớm cũng chỉ quay về trường hợp đó.
+ */
+@Component
+public class PrincipalCache {
+
+    private static final String CACHE_NAME = "principals";
+
+    private final Cache<UUID, UserDetailsImpl> cache;
+
+    // userId -> thời điểm thay đổi gần nhất; hết hạn khi mọi access token phát hành trước đó đã hết hạn
+    private final Cache<UUID, Instant> changes;
+
+    public PrincipalCache(MeterRegistry meterRegistry,
+                          @Value("${security.principal-cache.max-size:10000}") long maxSize,
+                          @Value("${security.principal-cache.ttl:5m}") Duration ttl,
+                          @Value("${jwt.access.expiration.ms}") long accessTokenLifetimeMs) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // Cùng giới hạn kích thước với cache principal để một loạt cập nhật hồ sơ không làm bộ nhớ tăng không giới hạn
+        this.changes = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(accessTokenLifetimeMs))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    // Lỗi của loader (vd người dùng đã bị xóa) được ném ra và không được cache
+    public UserDetailsImpl get(UUID userId, Function<UUID, UserDetailsImpl> loader) {
+        return cache.get(userId, loader);
+    }
+
+    /**
+     * Xóa principal của người dùng; khi được gọi trong transaction, việc xóa được lặp lại sau commit
+     * để một request chen giữa không nạp lại dữ liệu cũ vào cache.
+     */
+    public void invalidate(UUID userId) {
+        invalidateNow(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidateNow(userId);
+                }
+            });
+        }
+    }
+
+    /**
+     * true nếu claims của token phát hành lúc {@code issuedAt} có thể đã cũ (người dùng bị sửa/xóa
+     * từ thời điểm đó trở đi). issuedAt chỉ chính xác đến giây nên trường hợp cùng giây được coi là cũ.
+     */
+    public boolean changedSince(UUID userId, Instant issuedAt) {
+        Instant changedAt = changes.getIfPresent(userId);
+        return changedAt != null && !issuedAt.isAfter(changedAt);
+    }
+
+    private void invalidateNow(UUID userId) {
+        changes.put(userId, Instant.now());
+        cache.invalidate(userId);
+    }
+}
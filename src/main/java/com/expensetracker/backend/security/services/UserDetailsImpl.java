@@ -44,6 +44,20 @@ public class UserDetailsImpl implements UserDetails {
                 Collections.singletonList(() -> "ROLE_USER")); // Thêm role mặc định
     }
 
+    /**
+     * Principal cho request đã xác thực bằng JWT: không giữ password hash hay entity,
+     * nên có thể được cache giữa các request (xem PrincipalCache).
+     */
+    public static UserDetailsImpl withoutCredentials(User user) {
+        return withoutCredentials(user.getId(), user.getUsername(), user.getEmail());
+    }
+
+    // Dựng từ claims của access token đã xác minh chữ ký
+    public static UserDetailsImpl withoutCredentials(UUID id, String username, String email) {
+        return new UserDetailsImpl(id, username, email, null, null,
+                Collections.singletonList(() -> "ROLE_USER"));
+    }
+
     // ✅ Thêm phương thức này
     public User getUser() {
         return user;
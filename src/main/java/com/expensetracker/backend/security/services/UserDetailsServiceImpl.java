@@ -32,12 +32,12 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     /**
      * --- THÊM PHƯƠNG THỨC NÀY ---
      * Tải thông tin người dùng từ database bằng ID (UUID).
-     * Phương thức này sẽ được AuthTokenFilter sử dụng.
+     * Phương thức này sẽ được AuthTokenFilter sử dụng (qua PrincipalCache), nên kết quả không chứa password hash.
      */
-    @Transactional
-    public UserDetails loadUserById(UUID id) {
+    @Transactional(readOnly = true)
+    public UserDetailsImpl loadUserById(UUID id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new UsernameNotFoundException("User Not Found with id: " + id));
-        return UserDetailsImpl.build(user);
+        return UserDetailsImpl.withoutCredentials(user);
     }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.model.Transaction;
+import com.expensetracker.backend.repository.BudgetRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Gom các thay đổi "đã chi" của ngân sách theo (người dùng, danh mục, tháng, năm)
+ * rồi áp dụng mỗi nhóm bằng đúng một câu UPDATE. Chỉ giao dịch chi tiêu ảnh hưởng đến ngân sách.
+ * Không thread-safe: mỗi thao tác ghi dùng một đối tượng riêng.
+ */
+public class BudgetDeltas {
+
+    private final Map<Key, BigDecimal> deltas = new LinkedHashMap<>();
+
+    public BudgetDeltas add(UUID userId, Transaction transaction) {
+        return merge(userId, transaction, transaction.getAmount());
+    }
+
+    public BudgetDeltas subtract(UUID userId, Transaction transaction) {
+        return merge(userId, transaction, transaction.getAmount().negate());
+    }
+
+    private BudgetDeltas merge(UUID userId, Transaction transaction, BigDecimal amount) {
+        if (transaction.getType() == Transaction.TransactionType.expense) {
+            Key key = new Key(userId, transaction.getCategory(),
+                    transaction.getDate().getMonthValue(), transaction.getDate().getYear());
+            deltas.merge(key, amount, BigDecimal::add);
+        }
+        return this;
+    }
+
+    /**
+     * Áp dụng các nhóm có thay đổi ròng khác 0 (VD: sửa số tiền trong cùng danh mục chỉ tạo một UPDATE,
+     * sửa mà không đổi số tiền thì không tạo UPDATE nào).
+     *
+     * @return số câu UPDATE đã chạy
+     */
+    public int applyTo(BudgetRepository budgetRepository) {
+        LocalDateTime now = LocalDateTime.now();
+        int statements = 0;
+        for (Map.Entry<Key, BigDecimal> entry : deltas.entrySet()) {
+            if (entry.getValue().signum() == 0) {
+                continue;
+            }
+            Key key = entry.getKey();
+            budgetRepository.incrementSpentAmount(key.userId(), key.category(), key.month(), key.year(), entry.getValue(), now);
+            statements++;
+        }
+        deltas.clear();
+        return statements;
+    }
+
+    private record Key(UUID userId, String category, int month, int year) {
+    }
+}
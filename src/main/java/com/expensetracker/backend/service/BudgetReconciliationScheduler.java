@@ -0,0 +1,34 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.dto.BudgetReconciliationReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+
+@Service
+public class BudgetReconciliationScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(BudgetReconciliationScheduler.class);
+
+    @Autowired
+    private BudgetReconciliationService reconciliationService;
+
+    /**
+     * Chạy mỗi ngày (mặc định 3 giờ 30 sáng) cho tháng trước và tháng hiện tại,
+     * vì giao dịch vẫn có thể được thêm/sửa lùi ngày vào tháng trước.
+     */
+    @Scheduled(cron = "${budgets.reconciliation.cron:0 30 3 * * ?}")
+    public void reconcileBudgets() {
+        YearMonth current = YearMonth.now();
+        for (YearMonth month : new YearMonth[]{current.minusMonths(1), current}) {
+            BudgetReconciliationReport report = reconciliationService.reconcile(month);
+            logger.info("Budget reconciliation for {}: checked={}, corrected={}, totalDrift={}, failedChunks={}, completed={}, cursor={}",
+                    report.month(), report.budgetsChecked(), report.budgetsCorrected(),
+                    report.totalDrift(), report.failedChunks(), report.completed(), report.cursor());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.dto.BudgetReconciliationReport;
+import com.expensetracker.backend.model.Budget;
+import com.expensetracker.backend.model.SchedulerCheckpoint;
+import com.expensetracker.backend.repository.BudgetRepository;
+import com.expensetracker.backend.repository.SchedulerCheckpointRepository;
+import com.expensetracker.backend.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Đối soát Budget.spentAmount (bộ đếm phi chuẩn hóa) với tổng chi thực tế từ bảng transactions.
+ * Duyệt theo khối người dùng có ngân sách trong tháng; mỗi khối chạy trong một transaction riêng
+ * với một câu tổng hợp GROUP BY duy nhất, và ghi lại những ngân sách bị lệch bằng một câu UPDATE duy nhất.
+ */
+@Service
+public class BudgetReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BudgetReconciliationService.class);
+
+    // Một checkpoint cho mỗi tháng được đối soát, VD: budget-reconciliation:2025-08
+    private static final String JOB_NAME_PREFIX = "budget-reconciliation:";
+    private static final UUID FIRST_USER_ID = new UUID(0L, 0L);
+
+    private final BudgetRepository budgetRepository;
+    private final TransactionRepository transactionRepository;
+    private final SchedulerCheckpointRepository checkpointRepository;
+    private final UserDataVersionService dataVersionService;
+    private final DashboardCache dashboardCache;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${budgets.reconciliation.user-chunk-size:500}")
+    private int userChunkSize;
+
+    @Value("${budgets.reconciliation.time-budget:PT10M}")
+    private Duration timeBudget;
+
+    public BudgetReconciliationService(BudgetRepository budgetRepository,
+                                       TransactionRepository transactionRepository,
+                                       SchedulerCheckpointRepository checkpointRepository,
+                                       UserDataVersionService dataVersionService,
+                                       DashboardCache dashboardCache,
+                                       PlatformTransactionManager transactionManager) {
+        this.budgetRepository = budgetRepository;
+        this.transactionRepository = transactionRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.dataVersionService = dataVersionService;
+        this.dashboardCache = dashboardCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Đối soát toàn bộ ngân sách của một tháng. Dừng ở ranh giới khối khi vượt quá thời gian cho phép
+     * và lưu con trỏ (user id cuối cùng đã xử lý) vào scheduler_checkpoints; lần chạy sau tiếp tục từ đó,
+     * nên người dùng ở cuối thứ tự id vẫn được đối soát dù cả tháng không vừa một lần chạy.
+     * Một khối lỗi (VD: deadlock, hết thời gian chờ khóa) được ghi log và bỏ qua thay vì dừng cả lần chạy;
+     * nó sẽ được đối soát lại ở vòng kế tiếp (việc đối soát là idempotent).
+     */
+    public BudgetReconciliationReport reconcile(YearMonth month) {
+        long deadline = System.nanoTime() + timeBudget.toNanos();
+        long checked = 0;
+        long corrected = 0;
+        long failedChunks = 0;
+        BigDecimal totalDrift = BigDecimal.ZERO;
+
+        String jobName = JOB_NAME_PREFIX + month;
+        UUID after = Objects.requireNonNull(transactionTemplate.execute(status -> startRun(jobName)));
+        List<UUID> userIds;
+        while (!(userIds = budgetRepository.findUserIdsWithBudgetsAfter(
+                month.getMonthValue(), month.getYear(), after, PageRequest.of(0, userChunkSize))).isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                logger.warn("Budget reconciliation for {} stopped after exceeding its time budget of {}; next run resumes after user {}",
+                        month, timeBudget, after);
+                return new BudgetReconciliationReport(month, checked, corrected, totalDrift, failedChunks, after, false);
+            }
+            List<UUID> chunk = userIds;
+            UUID lastUserId = userIds.get(userIds.size() - 1);
+            Set<UUID> affectedUsers = Set.of();
+            try {
+                ChunkResult result = Objects.requireNonNull(transactionTemplate.execute(status -> reconcileChunk(chunk, month)));
+                checked += result.checked();
+                corrected += result.corrected();
+                totalDrift = totalDrift.add(result.drift());
+                affectedUsers = result.affectedUsers();
+            } catch (RuntimeException e) {
+                failedChunks++;
+                logger.error("Budget reconciliation for {} failed for users {}..{}; skipping the chunk",
+                        month, chunk.get(0), lastUserId, e);
+            }
+            // Sau khi khối đã commit: users (data_version) được cập nhật trong transaction riêng,
+            // nên không giữ khóa budgets trong lúc chờ khóa users (các luồng ghi khóa budgets rồi mới đến users)
+            Set<UUID> changedUsers = affectedUsers;
+            transactionTemplate.executeWithoutResult(status -> {
+                dataVersionService.bumpAll(changedUsers);
+                advance(jobName, lastUserId, false);
+            });
+            dashboardCache.evictUsers(changedUsers);
+            after = lastUserId;
+        }
+        transactionTemplate.executeWithoutResult(status -> advance(jobName, null, true));
+        return new BudgetReconciliationReport(month, checked, corrected, totalDrift, failedChunks, null, true);
+    }
+
+    // Tiếp tục sau con trỏ của lần chạy dở, hoặc bắt đầu một vòng mới từ user id nhỏ nhất
+    private UUID startRun(String jobName) {
+        SchedulerCheckpoint checkpoint = checkpointRepository.findById(jobName)
+                .orElseGet(() -> SchedulerCheckpoint.builder().jobName(jobName).completed(true).build());
+        if (!checkpoint.isCompleted() && checkpoint.getLastProcessedId() != null) {
+            logger.info("Resuming budget reconciliation {} after user {}", jobName, checkpoint.getLastProcessedId());
+            return checkpoint.getLastProcessedId();
+        }
+        checkpoint.setRunDate(LocalDate.now());
+        checkpoint.setLastProcessedId(null);
+        checkpoint.setCompleted(false);
+        checkpointRepository.save(checkpoint);
+        return FIRST_USER_ID;
+    }
+
+    private void advance(String jobName, UUID lastUserId, boolean completed) {
+        SchedulerCheckpoint checkpoint = checkpointRepository.findById(jobName).orElseThrow();
+        checkpoint.setLastProcessedId(lastUserId);
+        checkpoint.setCompleted(completed);
+    }
+
+    private ChunkResult reconcileChunk(List<UUID> userIds, YearMonth month) {
+        // Khóa trước rồi mới tính tổng: giao dịch đã commit đều được tính,
+        // giao dịch đang chạy sẽ cộng dồn phần của nó sau khi khối này commit
+        List<Budget> budgets = budgetRepository.findForUpdateByUserIdsAndMonth(
+                userIds, month.getMonthValue(), month.getYear());
+
+        LocalDate start = month.atDay(1);
+        LocalDate end = month.plusMonths(1).atDay(1);
+        Map<SpentKey, BigDecimal> actual = new HashMap<>();
+        for (Object[] row : transactionRepository.sumExpenseByUserIdsAndCategory(userIds, start, end)) {
+            actual.put(new SpentKey((UUID) row[0], (String) row[1]), (BigDecimal) row[2]);
+        }
+
+        BigDecimal drift = BigDecimal.ZERO;
+        List<UUID> drifted = new ArrayList<>();
+        Set<UUID> affectedUsers = new HashSet<>();
+        for (Budget budget : budgets) {
+            BigDecimal spent = actual.getOrDefault(new SpentKey(budget.getUser().getId(), budget.getCategory()), BigDecimal.ZERO);
+            if (budget.getSpentAmount().compareTo(spent) != 0) {
+                drift = drift.add(spent.subtract(budget.getSpentAmount()).abs());
+                drifted.add(budget.getId());
+                affectedUsers.add(budget.getUser().getId());
+            }
+        }
+        if (!drifted.isEmpty()) {
+            // Các dòng đã bị khóa ở trên nên tổng tính lại trong câu UPDATE trùng với tổng vừa so sánh
+            budgetRepository.recomputeSpentAmounts(drifted, start, end, LocalDateTime.now());
+        }
+        // Số đã chi của những người dùng này thay đổi: người gọi làm mất hiệu lực ETag và cache dashboard
+        return new ChunkResult(budgets.size(), drifted.size(), drift, affectedUsers);
+    }
+
+    private record SpentKey(UUID userId, String category) {
+    }
+
+    private record ChunkResult(long checked, long corrected, BigDecimal drift, Set<UUID> affectedUsers) {
+    }
+}
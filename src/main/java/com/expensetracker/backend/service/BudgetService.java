@@ -4,11 +4,13 @@ import com.expensetracker.backend.dto.BudgetDTO;
 import com.expensetracker.backend.model.Budget;
 import com.expensetracker.backend.model.User;
 import com.expensetracker.backend.repository.BudgetRepository;
+import com.expensetracker.backend.repository.TransactionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -20,7 +22,14 @@ public class BudgetService {
     @Autowired
     private BudgetRepository budgetRepository;
 
-    // Không cần TransactionRepository ở đây nữa
+    @Autowired
+    private DashboardCache dashboardCache;
+
+    @Autowired
+    private UserDataVersionService dataVersionService;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
 
     /**
      * Lấy tất cả ngân sách của người dùng cho một tháng.
@@ -52,7 +61,7 @@ public class BudgetService {
      * Nếu chưa, nó sẽ tạo mới.
      */
     public Budget createOrUpdateBudget(Budget budgetRequest, UUID userId) {
-        // Tìm budget đã có, nếu không thì tạo mới và spentAmount sẽ mặc định là 0
+        // Tìm budget đã có, nếu không thì tạo mới
         Budget budget = budgetRepository.findByUser_IdAndCategoryAndMonthAndYear(
                 userId,
                 budgetRequest.getCategory(),
@@ -71,11 +80,15 @@ public class BudgetService {
         budget.setMonth(budgetRequest.getMonth());
         budget.setYear(budgetRequest.getYear());
 
-        // Nếu là budget mới, spentAmount sẽ là 0 theo mặc định trong Entity
+        // Budget mới bắt đầu từ số tiền đã chi thực tế, vì có thể đã có giao dịch trong tháng trước khi đặt ngân sách
         if (budget.getId() == null) {
-            budget.setSpentAmount(BigDecimal.ZERO);
+            YearMonth month = YearMonth.of(budget.getYear(), budget.getMonth());
+            budget.setSpentAmount(transactionRepository.sumExpenseByCategoryAndDateRange(
+                    userId, budget.getCategory(), month.atDay(1), month.plusMonths(1).atDay(1)));
         }
 
+        dashboardCache.evictUser(userId);
+        dataVersionService.bump(userId);
         return budgetRepository.save(budget);
     }
 
@@ -87,5 +100,7 @@ public class BudgetService {
                 .orElseThrow(() -> new SecurityException("Budget not found or access denied"));
 
         budgetRepository.delete(budget);
+        dashboardCache.evictUser(userId);
+        dataVersionService.bump(userId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,221 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.dto.CashFlowForecast;
+import com.expensetracker.backend.dto.CashFlowForecast.MonthProjection;
+import com.expensetracker.backend.dto.CashFlowForecast.Occurrence;
+import com.expensetracker.backend.dto.CategoryTotalView;
+import com.expensetracker.backend.dto.DashboardAggregateView;
+import com.expensetracker.backend.model.RecurringTransaction;
+import com.expensetracker.backend.model.Transaction;
+import com.expensetracker.backend.model.User;
+import com.expensetracker.backend.repository.MonthlyAggregateRepository;
+import com.expensetracker.backend.repository.RecurringTransactionRepository;
+import com.expensetracker.backend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Dự báo dòng tiền từ các giao dịch định kỳ mà không ghi gì vào database:
+ * mỗi tác vụ đang hoạt động được mở rộng lười thành các lần thực thi, các chuỗi được trộn theo ngày
+ * bằng một hàng đợi ưu tiên (k-way merge), rồi kết hợp với chi tiêu trung bình theo danh mục
+ * (đọc từ bảng tổng hợp tháng) để ước tính số dư cuối mỗi tháng.
+ */
+@Service
+public class CashFlowForecastService {
+
+    private final RecurringTransactionRepository recurringRepository;
+    private final MonthlyAggregateRepository aggregateRepository;
+    private final UserRepository userRepository;
+    private final UserBalanceService balanceService;
+
+    // Số tháng dự báo tối đa (tính cả tháng hiện tại)
+    @Value("${forecast.max-months:12}")
+    private int maxMonths;
+
+    // Số tháng trọn vẹn gần nhất dùng để tính chi tiêu trung bình theo danh mục
+    @Value("${forecast.history-months:3}")
+    private int historyMonths;
+
+    // Số lần thực thi tối đa trả về trong danh sách (tổng theo tháng vẫn tính đủ)
+    @Value("${forecast.max-occurrences:500}")
+    private int maxOccurrences;
+
+    public CashFlowForecastService(RecurringTransactionRepository recurringRepository,
+                                   MonthlyAggregateRepository aggregateRepository,
+                                   UserRepository userRepository,
+                                   UserBalanceService balanceService) {
+        this.recurringRepository = recurringRepository;
+        this.aggregateRepository = aggregateRepository;
+        this.userRepository = userRepository;
+        this.balanceService = balanceService;
+    }
+
+    // Ngày hiện tại theo múi giờ của người dùng
+    @Transactional(readOnly = true)
+    public LocalDate today(UUID userId) {
+        String timeZone = userRepository.findTimeZoneById(userId).orElse(User.DEFAULT_TIME_ZONE);
+        return LocalDate.now(ZoneId.of(timeZone));
+    }
+
+    /**
+     * Dự báo cho {@code months} tháng, bắt đầu từ tháng chứa {@code today}.
+     */
+    @Transactional(readOnly = true)
+    public CashFlowForecast forecast(UUID userId, int months, LocalDate today) {
+        if (months < 1 || months > maxMonths) {
+            throw new IllegalArgumentException("months must be between 1 and " + maxMonths);
+        }
+        YearMonth currentMonth = YearMonth.from(today);
+        LocalDate to = currentMonth.plusMonths(months - 1L).atEndOfMonth();
+
+        Map<YearMonth, MonthTotals> totals = new LinkedHashMap<>();
+        for (int i = 0; i < months; i++) {
+            totals.put(currentMonth.plusMonths(i), new MonthTotals());
+        }
+
+        // Trộn k chuỗi ngày đã sắp xếp: mỗi tác vụ chỉ có một phần tử trong hàng đợi tại một thời điểm
+        PriorityQueue<OccurrenceCursor> queue = new PriorityQueue<>(
+                Comparator.comparing((OccurrenceCursor cursor) -> cursor.date)
+                        .thenComparing(cursor -> cursor.template.getId()));
+        for (RecurringTransaction template : recurringRepository.findByUser_IdAndIsActiveTrue(userId)) {
+            OccurrenceCursor cursor = new OccurrenceCursor(template);
+            if (cursor.advance(to)) {
+                queue.add(cursor);
+            }
+        }
+
+        List<Occurrence> occurrences = new ArrayList<>();
+        boolean truncated = false;
+        while (!queue.isEmpty()) {
+            OccurrenceCursor cursor = queue.poll();
+            RecurringTransaction template = cursor.template;
+            if (occurrences.size() < maxOccurrences) {
+                occurrences.add(new Occurrence(cursor.date, template.getId(), template.getTitle(),
+                        template.getCategory(), template.getType(), template.getAmount()));
+            } else {
+                truncated = true;
+            }
+            // Lần thực thi còn tồn đọng (bộ lập lịch chưa chạy) được tính vào tháng hiện tại
+            YearMonth month = YearMonth.from(cursor.date);
+            totals.get(month.isBefore(currentMonth) ? currentMonth : month).add(template);
+            if (cursor.advance(to)) {
+                queue.add(cursor);
+            }
+        }
+
+        BigDecimal balance = balanceService.getBalance(userId);
+        return new CashFlowForecast(today, to, balance, occurrences, truncated,
+                project(userId, currentMonth, balance, totals));
+    }
+
+    /**
+     * Số dư cuối tháng = số dư tháng trước + thu định kỳ - chi định kỳ - chi tiêu khác ước tính.
+     * Chi tiêu khác của một danh mục là phần trung bình lịch sử chưa được giải thích bởi giao dịch định kỳ
+     * (và, với tháng hiện tại, bởi số đã chi): max(0, trung bình - đã chi - chi định kỳ còn lại).
+     * Thu nhập không định kỳ không được dự báo.
+     */
+    private List<MonthProjection> project(UUID userId, YearMonth currentMonth, BigDecimal balance,
+                                          Map<YearMonth, MonthTotals> totals) {
+        Map<String, BigDecimal> averageSpend = averageMonthlySpendByCategory(userId, currentMonth);
+        Map<String, BigDecimal> spentThisMonth = new HashMap<>();
+        for (DashboardAggregateView row : aggregateRepository.findDashboardAggregates(
+                userId, currentMonth.getMonthValue(), currentMonth.getYear())) {
+            if (row.getType() == Transaction.TransactionType.expense) {
+                spentThisMonth.merge(row.getCategory(), row.getMonthAmount(), BigDecimal::add);
+            }
+        }
+
+        List<MonthProjection> projections = new ArrayList<>(totals.size());
+        for (Map.Entry<YearMonth, MonthTotals> entry : totals.entrySet()) {
+            MonthTotals month = entry.getValue();
+            boolean current = entry.getKey().equals(currentMonth);
+            BigDecimal other = BigDecimal.ZERO;
+            for (Map.Entry<String, BigDecimal> average : averageSpend.entrySet()) {
+                BigDecimal explained = month.expensesByCategory.getOrDefault(average.getKey(), BigDecimal.ZERO);
+                if (current) {
+                    explained = explained.add(spentThisMonth.getOrDefault(average.getKey(), BigDecimal.ZERO));
+                }
+                other = other.add(average.getValue().subtract(explained).max(BigDecimal.ZERO));
+            }
+            balance = balance.add(month.income).subtract(month.expenses).subtract(other);
+            projections.add(new MonthProjection(entry.getKey(), month.income, month.expenses,
+                    other.setScale(2, RoundingMode.HALF_UP), balance.setScale(2, RoundingMode.HALF_UP)));
+        }
+        return projections;
+    }
+
+    // Chi tiêu trung bình mỗi tháng theo danh mục trong historyMonths tháng trọn vẹn trước tháng hiện tại
+    private Map<String, BigDecimal> averageMonthlySpendByCategory(UUID userId, YearMonth currentMonth) {
+        if (historyMonths <= 0) {
+            return Map.of();
+        }
+        List<CategoryTotalView> rows = aggregateRepository.sumByCategoryBetween(userId,
+                Transaction.TransactionType.expense,
+                monthIndex(currentMonth.minusMonths(historyMonths)), monthIndex(currentMonth.minusMonths(1)));
+        Map<String, BigDecimal> averages = new HashMap<>();
+        BigDecimal divisor = BigDecimal.valueOf(historyMonths);
+        for (CategoryTotalView row : rows) {
+            averages.put(row.getCategory(), row.getTotal().divide(divisor, 2, RoundingMode.HALF_UP));
+        }
+        return averages;
+    }
+
+    // Cùng cách mã hóa với MonthlyAggregateRepository.sumByCategoryBetween
+    private static int monthIndex(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue();
+    }
+
+    private static final class OccurrenceCursor {
+
+        private final RecurringTransaction template;
+        private final Iterator<LocalDate> dates;
+        private LocalDate date;
+
+        OccurrenceCursor(RecurringTransaction template) {
+            this.template = template;
+            this.dates = RecurrenceSchedule.occurrences(template.getStartDate(), template.getNextExecutionDate(),
+                    template.getFrequency(), template.getEndDate());
+        }
+
+        // Chuyển sang lần thực thi kế tiếp; false nếu hết hoặc đã vượt quá ngày cuối của khoảng dự báo
+        boolean advance(LocalDate to) {
+            if (!dates.hasNext()) {
+                return false;
+            }
+            date = dates.next();
+            return !date.isAfter(to);
+        }
+    }
+
+    private static final class MonthTotals {
+
+        private BigDecimal income = BigDecimal.ZERO;
+        private BigDecimal expenses = BigDecimal.ZERO;
+        private final Map<String, BigDecimal> expensesByCategory = new HashMap<>();
+
+        void add(RecurringTransaction template) {
+            if (template.getType() == Transaction.TransactionType.income) {
+                income = income.add(template.getAmount());
+            } else {
+                expenses = expenses.add(template.getAmount());
+                expensesByCategory.merge(template.getCategory(), template.getAmount(), BigDecimal::add);
+            }
+        }
+    }
+}
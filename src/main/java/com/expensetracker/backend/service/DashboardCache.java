@@ -0,0 +1,70 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.dto.DashboardStats;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Cache trong bộ nhớ cho thống kê dashboard, khóa theo (userId, tháng, năm, data_version).
+ * Mọi thao tác ghi đều tăng data_version trong cùng transaction, nên một lần nạp bắt đầu trước commit
+ * chỉ có thể ghi dữ liệu cũ vào khóa của phiên bản cũ, và không bao giờ bị trả kèm ETag của phiên bản mới.
+ * Giới hạn kích thước và TTL; số lần hit/miss/eviction được đăng ký vào Micrometer
+ * (metric "cache.*" với tag cache=dashboard, xem qua /actuator/metrics).
+ */
+@Component
+public class DashboardCache {
+
+    private static final String CACHE_NAME = "dashboard";
+
+    private final Cache<Key, DashboardStats> cache;
+
+    public DashboardCache(MeterRegistry meterRegistry,
+                          @Value("${dashboard.cache.max-size:10000}") long maxSize,
+                          @Value("${dashboard.cache.ttl:5m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * @param dataVersion phiên bản dữ liệu của người dùng, phải được đọc TRƯỚC khi nạp
+     *                    (cùng giá trị dùng cho ETag, xem UserDataVersionService#getVersion)
+     */
+    public DashboardStats get(UUID userId, int month, int year, long dataVersion, Supplier<DashboardStats> loader) {
+        return cache.get(new Key(userId, month, year, dataVersion), key -> loader.get());
+    }
+
+    /**
+     * Xóa mọi tháng đã cache của người dùng (số dư lũy kế hiện trên dashboard của mọi tháng).
+     * Tính đúng đắn đã do data_version trong khóa đảm bảo; việc xóa chỉ giải phóng sớm các mục
+     * của phiên bản cũ thay vì chờ TTL.
+     */
+    public void evictUser(UUID userId) {
+        evictUsers(Set.of(userId));
+    }
+
+    // Như evictUser, nhưng chỉ duyệt cache một lần cho cả khối người dùng
+    public void evictUsers(Collection<UUID> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        Set<UUID> users = Set.copyOf(userIds);
+        cache.asMap().keySet().removeIf(key -> users.contains(key.userId()));
+    }
+
+    private record Key(UUID userId, int month, int year, long dataVersion) {
+    }
+}
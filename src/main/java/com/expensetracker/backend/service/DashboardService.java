@@ -1,18 +1,25 @@
 package com.expensetracker.backend.service;
 
+import com.expensetracker.backend.dto.DashboardAggregateView;
 import com.expensetracker.backend.dto.DashboardStats;
 import com.expensetracker.backend.dto.DashboardStats.CategoryExpense;
+import com.expensetracker.backend.dto.TransactionListItem;
 import com.expensetracker.backend.model.Transaction;
 import com.expensetracker.backend.repository.TransactionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Service
 public class DashboardService {
@@ -20,38 +27,39 @@ public class DashboardService {
     @Autowired
     private TransactionRepository transactionRepository;
 
-    public DashboardStats getDashboardStats(UUID userId, int month, int year) {
-        // --- TÍNH TOÁN DỮ LIỆU CHO THÁNG HIỆN TẠI ---
+    @Autowired
+    private MonthlyAggregateService aggregateService;
 
-        // 1. Lấy tổng thu nhập CHO THÁNG ĐÃ CHỌN
-        BigDecimal totalIncomeForMonth = transactionRepository.sumAmountByTypeAndMonthAndYear(userId, Transaction.TransactionType.income, month, year);
+    @Autowired
+    private UserBalanceService balanceService;
 
-        // 2. Lấy tổng chi tiêu CHO THÁNG ĐÃ CHỌN
-        BigDecimal totalExpensesForMonth = transactionRepository.sumAmountByTypeAndMonthAndYear(userId, Transaction.TransactionType.expense, month, year);
+    @Transactional(readOnly = true)
+    public DashboardStats getDashboardStats(UUID userId, int month, int year) {
+        // --- TÍNH TOÁN DỮ LIỆU CHO THÁNG HIỆN TẠI ---
 
-        // 3. Lấy chi tiêu theo danh mục cho tháng
-        List<Map<String, Object>> expenseByCategoryData = transactionRepository.findExpenseByCategoryAndMonthAndYear(userId, month, year);
-        List<CategoryExpense> expenseByCategory = expenseByCategoryData.stream()
-                .map(item -> new CategoryExpense(
-                        (String) item.get("category"),
-                        (BigDecimal) item.get("amount")
-                ))
-                .collect(Collectors.toList());
+        // 1-3. Một câu truy vấn duy nhất trên bảng tổng hợp trả về thu/chi và chi tiêu theo danh mục của tháng
+        List<DashboardAggregateView> aggregates = aggregateService.getDashboardAggregates(userId, month, year);
+
+        BigDecimal totalIncomeForMonth = BigDecimal.ZERO;
+        BigDecimal totalExpensesForMonth = BigDecimal.ZERO;
+        List<CategoryExpense> expenseByCategory = new ArrayList<>();
+        for (DashboardAggregateView row : aggregates) {
+            if (row.getType() == Transaction.TransactionType.income) {
+                totalIncomeForMonth = totalIncomeForMonth.add(row.getMonthAmount());
+            } else {
+                totalExpensesForMonth = totalExpensesForMonth.add(row.getMonthAmount());
+                if (row.getMonthCount() > 0) {
+                    expenseByCategory.add(new CategoryExpense(row.getCategory(), row.getMonthAmount()));
+                }
+            }
+        }
+        expenseByCategory.sort(Comparator.comparing(CategoryExpense::getAmount).reversed());
 
         // 4. Lấy các giao dịch gần đây cho tháng
-        List<Transaction> recentTransactions = transactionRepository.findRecentTransactionsByMonthAndYear(userId, month, year, PageRequest.of(0, 5));
+        List<TransactionListItem> recentTransactions = transactionRepository.findRecentTransactionsByMonthAndYear(userId, month, year, PageRequest.of(0, 5));
 
-        // --- TÍNH TOÁN SỐ DƯ TỔNG CỘNG (CUMULATIVE BALANCE) ---
-        // --- SỬA LỖI LOGIC QUAN TRỌNG NHẤT Ở ĐÂY ---
-
-        // 5a. Lấy tổng thu nhập TỪ TRƯỚC ĐẾN NAY (sử dụng phương thức cũ không có bộ lọc tháng/năm)
-        BigDecimal totalIncomeAllTime = transactionRepository.sumAmountByTypeAndUserId(userId, Transaction.TransactionType.income);
-
-        // 5b. Lấy tổng chi tiêu TỪ TRƯỚC ĐẾN NAY
-        BigDecimal totalExpensesAllTime = transactionRepository.sumAmountByTypeAndUserId(userId, Transaction.TransactionType.expense);
-
-        // 5c. Tính toán số dư TỔNG CỘNG
-        BigDecimal cumulativeBalance = totalIncomeAllTime.subtract(totalExpensesAllTime);
+        // 5. Số dư TỔNG CỘNG, đọc O(1) từ sổ số dư lũy kế
+        BigDecimal cumulativeBalance = balanceService.getBalance(userId);
 
 
         // Dữ liệu lịch sử không cần thiết cho màn hình này
@@ -67,4 +75,38 @@ public class DashboardService {
                 recentTransactions
         );
     }
-}
\ No newline at end of file
+
+    // Giới hạn số tháng của một lần truy vấn chuỗi lịch sử (10 năm)
+    private static final int MAX_SERIES_MONTHS = 120;
+
+    /**
+     * Chuỗi thu/chi theo tháng từ tháng from đến tháng to (bao gồm cả hai), trong MỘT câu truy vấn.
+     * Các tháng không có giao dịch vẫn có mặt với giá trị 0, để biểu đồ không bị đứt đoạn.
+     */
+    @Transactional(readOnly = true)
+    public List<DashboardStats.MonthlyData> getMonthlySeries(UUID userId, YearMonth from, YearMonth to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+        long months = from.until(to, ChronoUnit.MONTHS) + 1;
+        if (months > MAX_SERIES_MONTHS) {
+            throw new IllegalArgumentException("Range must not exceed " + MAX_SERIES_MONTHS + " months");
+        }
+
+        Map<YearMonth, Map<String, Object>> byMonth = new HashMap<>();
+        for (Map<String, Object> row : transactionRepository.findMonthlySummary(
+                userId, from.atDay(1), to.plusMonths(1).atDay(1))) {
+            YearMonth month = YearMonth.of(((Number) row.get("year")).intValue(), ((Number) row.get("month")).intValue());
+            byMonth.put(month, row);
+        }
+
+        List<DashboardStats.MonthlyData> series = new ArrayList<>((int) months);
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            Map<String, Object> row = byMonth.get(month);
+            series.add(new DashboardStats.MonthlyData(month.toString(),
+                    row == null ? BigDecimal.ZERO : (BigDecimal) row.get("income"),
+                    row == null ? BigDecimal.ZERO : (BigDecimal) row.get("expenses")));
+        }
+        return series;
+    }
+}
@@ -0,0 +1,41 @@
+package com.expensetracker.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dựng lại bảng monthly_aggregates khi khởi động.
+ * Tự động: khi bảng còn rỗng nhưng đã có giao dịch (lần đầu nâng cấp lên phiên bản có bảng tổng hợp).
+ * Thủ công, khi phát hiện sai lệch: java -jar app.jar --aggregates.rebuild=true
+ * Việc dựng lại an toàn khi đang có thao tác ghi, nên có thể chạy trên một instance đang phục vụ.
+ */
+@Component
+public class MonthlyAggregateRebuildRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MonthlyAggregateRebuildRunner.class);
+
+    private final MonthlyAggregateService aggregateService;
+
+    @Value("${aggregates.rebuild:false}")
+    private boolean rebuildRequested;
+
+    public MonthlyAggregateRebuildRunner(MonthlyAggregateService aggregateService) {
+        this.aggregateService = aggregateService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (rebuildRequested) {
+            logger.info("Rebuilding monthly aggregates from transactions...");
+            aggregateService.rebuild();
+        } else if (!aggregateService.backfillIfEmpty()) {
+            return;
+        }
+        long mismatches = aggregateService.verify();
+        logger.info("Monthly aggregates rebuild finished: {} mismatches after rebuild.", mismatches);
+    }
+}
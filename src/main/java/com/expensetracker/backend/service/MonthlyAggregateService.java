@@ -0,0 +1,305 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.dto.DashboardAggregateView;
+import com.expensetracker.backend.model.MonthlyAggregate;
+import com.expensetracker.backend.model.Transaction;
+import com.expensetracker.backend.model.User;
+import com.expensetracker.backend.repository.MonthlyAggregateRepository;
+import com.expensetracker.backend.repository.TransactionRepository;
+import com.expensetracker.backend.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Duy trì bảng monthly_aggregates song song với bảng transactions.
+ * Các phương thức add/subtract phải chạy trong transaction của thao tác ghi giao dịch
+ * để bảng tổng hợp luôn khớp với dữ liệu gốc.
+ */
+@Service
+public class MonthlyAggregateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MonthlyAggregateService.class);
+
+    private static final int REBUILD_CHUNK_ATTEMPTS = 3;
+
+    private final MonthlyAggregateRepository aggregateRepository;
+    private final TransactionRepository transactionRepository;
+    private final UserRepository userRepository;
+    private final UserDataVersionService dataVersionService;
+    private final DashboardCache dashboardCache;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${aggregates.user-chunk-size:500}")
+    private int userChunkSize;
+
+    public MonthlyAggregateService(MonthlyAggregateRepository aggregateRepository,
+                                   TransactionRepository transactionRepository,
+                                   UserRepository userRepository,
+                                   UserDataVersionService dataVersionService,
+                                   DashboardCache dashboardCache,
+                                   PlatformTransactionManager transactionManager) {
+        this.aggregateRepository = aggregateRepository;
+        this.transactionRepository = transactionRepository;
+        this.userRepository = userRepository;
+        this.dataVersionService = dataVersionService;
+        this.dashboardCache = dashboardCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void add(UUID userId, Transaction transaction) {
+        applyDelta(userId, AggregateKey.of(transaction), transaction.getAmount(), 1);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void subtract(UUID userId, Transaction transaction) {
+        applyDelta(userId, AggregateKey.of(transaction), transaction.getAmount().negate(), -1);
+    }
+
+    /**
+     * Gộp nhiều giao dịch theo khóa tổng hợp rồi cập nhật mỗi nhóm một lần (dùng cho import hàng loạt).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void addAll(UUID userId, Collection<Transaction> transactions) {
+        Map<AggregateKey, BigDecimal> amounts = new HashMap<>();
+        Map<AggregateKey, Long> counts = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            AggregateKey key = AggregateKey.of(transaction);
+            amounts.merge(key, transaction.getAmount(), BigDecimal::add);
+            counts.merge(key, 1L, Long::sum);
+        }
+        amounts.forEach((key, amount) -> applyDelta(userId, key, amount, counts.get(key)));
+    }
+
+    @Transactional(readOnly = true)
+    public List<DashboardAggregateView> getDashboardAggregates(UUID userId, int month, int year) {
+        return aggregateRepository.findDashboardAggregates(userId, month, year);
+    }
+
+    private void applyDelta(UUID userId, AggregateKey key, BigDecimal amount, long count) {
+        int updated = aggregateRepository.applyDelta(userId, key.year(), key.month(), key.type(), key.category(), amount, count);
+        // Chưa có dòng: chèn mới; nếu transaction khác chèn trước (ghi song song) thì cộng dồn vào dòng của nó
+        if (updated == 0 && aggregateRepository.insertIfAbsent(UUID.randomUUID(), userId, key.year(), key.month(),
+                key.type().name(), key.category(), amount, count) == 0) {
+            aggregateRepository.applyDelta(userId, key.year(), key.month(), key.type(), key.category(), amount, count);
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ bảng tổng hợp từ bảng transactions, theo từng khối người dùng
+     * (mỗi khối một transaction riêng). Người dùng có số liệu thay đổi được tăng phiên bản dữ liệu
+     * và xóa khỏi cache dashboard, để ETag/cache cũ không tiếp tục trả về tổng sai.
+     * An toàn khi ứng dụng đang nhận ghi (xem rebuildChunk).
+     *
+     * @return số dòng tổng hợp đã ghi
+     */
+    public long rebuild() {
+        long rows = 0;
+        UUID after = new UUID(0L, 0L);
+        List<UUID> userIds;
+        while (!(userIds = userRepository.findIdsAfter(after, PageRequest.of(0, userChunkSize))).isEmpty()) {
+            rows += rebuildChunkWithRetry(userIds);
+            after = userIds.get(userIds.size() - 1);
+        }
+        logger.info("Rebuilt monthly aggregates: {} rows written.", rows);
+        return rows;
+    }
+
+    /**
+     * Bản nâng cấp đầu tiên có bảng tổng hợp bắt đầu với bảng rỗng: dựng lại một lần nếu đã có giao dịch,
+     * để dashboard không hiện toàn số 0 cho dữ liệu cũ.
+     *
+     * @return true nếu đã dựng lại
+     */
+    public boolean backfillIfEmpty() {
+        if (aggregateRepository.count() > 0 || transactionRepository.count() == 0) {
+            return false;
+        }
+        logger.info("Monthly aggregates table is empty but transactions exist; backfilling it.");
+        rebuild();
+        return true;
+    }
+
+    // Khối dựng lại có thể bị database chọn làm nạn nhân deadlock khi tranh khóa với thao tác ghi: chạy lại khối đó
+    private long rebuildChunkWithRetry(List<UUID> userIds) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return Objects.requireNonNull(transactionTemplate.execute(status -> rebuildChunk(userIds)));
+            } catch (TransientDataAccessException e) {
+                if (attempt >= REBUILD_CHUNK_ATTEMPTS) {
+                    throw e;
+                }
+                logger.warn("Rebuild of users {}..{} lost a lock conflict (attempt {}), retrying.",
+                        userIds.get(0), userIds.get(userIds.size() - 1), attempt, e);
+            }
+        }
+    }
+
+    /**
+     * So sánh bảng tổng hợp với số liệu tính trực tiếp từ bảng transactions.
+     *
+     * @return số khóa (người dùng, năm, tháng, loại, danh mục) bị lệch
+     */
+    public long verify() {
+        long mismatches = 0;
+        UUID after = new UUID(0L, 0L);
+        List<UUID> userIds;
+        while (!(userIds = userRepository.findIdsAfter(after, PageRequest.of(0, userChunkSize))).isEmpty()) {
+            List<UUID> chunk = userIds;
+            mismatches += Objects.requireNonNull(transactionTemplate.execute(status -> verifyChunk(chunk)));
+            after = userIds.get(userIds.size() - 1);
+        }
+        if (mismatches > 0) {
+            logger.warn("Monthly aggregates verification found {} mismatched keys.", mismatches);
+        } else {
+            logger.info("Monthly aggregates verification passed.");
+        }
+        return mismatches;
+    }
+
+    /**
+     * Khóa theo đúng thứ tự của các thao tác ghi (dòng tổng hợp trước, dòng users sau cùng) rồi mới đọc:
+     * thao tác ghi đang giữ dòng tổng hợp phải commit trước nên được tính trong tổng thực tế,
+     * còn thao tác ghi đến sau phải chờ khối này commit rồi mới cộng dồn vào các dòng vừa dựng lại.
+     * Khóa dòng users chặn cả thao tác ghi chèn khóa tổng hợp mới (chưa có dòng để khóa) trước khi nó commit.
+     * Dòng được sửa tại chỗ (không xóa rồi chèn lại), để thao tác ghi đang chờ khóa vẫn cộng vào đúng dòng;
+     * dòng đã khớp không bị ghi lại.
+     */
+    private long rebuildChunk(List<UUID> userIds) {
+        aggregateRepository.findForUpdateByUserIds(userIds);
+        userRepository.lockByIds(userIds);
+        // Đọc lại sau khi đã giữ đủ khóa, không dùng bản đã nạp vào persistence context trước đó
+        entityManager.clear();
+
+        Map<UserAggregateKey, Totals> live = liveAggregates(userIds);
+        Map<UserAggregateKey, MonthlyAggregate> rows = new HashMap<>();
+        for (MonthlyAggregate row : aggregateRepository.findByUser_IdIn(userIds)) {
+            rows.put(UserAggregateKey.of(row), row);
+        }
+        Set<UUID> changed = new HashSet<>();
+        compare(live, storedAggregates(rows.values()), (key, message) -> changed.add(key.userId()));
+
+        List<MonthlyAggregate> inserted = new ArrayList<>();
+        live.forEach((key, totals) -> {
+            MonthlyAggregate row = rows.remove(key);
+            if (row == null) {
+                User userRef = new User();
+                userRef.setId(key.userId());
+                row = MonthlyAggregate.builder()
+                        .user(userRef)
+                        .year(key.key().year())
+                        .month(key.key().month())
+                        .type(key.key().type())
+                        .category(key.key().category())
+                        .build();
+                inserted.add(row);
+            }
+            row.setTotalAmount(totals.amount());
+            row.setTransactionCount(totals.count());
+        });
+        aggregateRepository.deleteAll(rows.values());
+        aggregateRepository.saveAll(inserted);
+
+        if (!changed.isEmpty()) {
+            logger.warn("Rebuild corrected monthly aggregates for {} users.", changed.size());
+            dataVersionService.bumpAll(changed);
+            dashboardCache.evictUsers(changed);
+        }
+        return live.size();
+    }
+
+    private long verifyChunk(List<UUID> userIds) {
+        return compare(liveAggregates(userIds), storedAggregates(aggregateRepository.findByUser_IdIn(userIds)),
+                (key, message) -> logger.warn("{}: {}", message, key));
+    }
+
+    /**
+     * Gọi onMismatch cho mỗi khóa lệch giữa số liệu thực tế và bảng tổng hợp.
+     *
+     * @return số khóa bị lệch
+     */
+    private static long compare(Map<UserAggregateKey, Totals> live, Map<UserAggregateKey, Totals> stored,
+                                BiConsumer<UserAggregateKey, String> onMismatch) {
+        Map<UserAggregateKey, Totals> remaining = new HashMap<>(stored);
+        long mismatches = 0;
+        for (Map.Entry<UserAggregateKey, Totals> entry : live.entrySet()) {
+            if (!entry.getValue().matches(remaining.remove(entry.getKey()))) {
+                onMismatch.accept(entry.getKey(), "Aggregate mismatch, live=" + entry.getValue());
+                mismatches++;
+            }
+        }
+        for (UserAggregateKey orphan : remaining.keySet()) {
+            onMismatch.accept(orphan, "Aggregate row without transactions");
+            mismatches++;
+        }
+        return mismatches;
+    }
+
+    private static Map<UserAggregateKey, Totals> storedAggregates(Collection<MonthlyAggregate> rows) {
+        Map<UserAggregateKey, Totals> stored = new HashMap<>();
+        for (MonthlyAggregate row : rows) {
+            // Dòng đã về 0 (mọi giao dịch bị xóa) tương đương với không có dòng
+            if (row.getTransactionCount() == 0 && row.getTotalAmount().signum() == 0) {
+                continue;
+            }
+            stored.put(UserAggregateKey.of(row), new Totals(row.getTotalAmount(), row.getTransactionCount()));
+        }
+        return stored;
+    }
+
+    private Map<UserAggregateKey, Totals> liveAggregates(List<UUID> userIds) {
+        Map<UserAggregateKey, Totals> result = new HashMap<>();
+        for (Object[] row : transactionRepository.aggregateMonthlyByUserIds(userIds)) {
+            AggregateKey key = new AggregateKey(((Number) row[1]).intValue(), ((Number) row[2]).intValue(),
+                    (Transaction.TransactionType) row[3], (String) row[4]);
+            result.put(new UserAggregateKey((UUID) row[0], key),
+                    new Totals((BigDecimal) row[5], ((Number) row[6]).longValue()));
+        }
+        return result;
+    }
+
+    private record AggregateKey(int year, int month, Transaction.TransactionType type, String category) {
+        static AggregateKey of(Transaction transaction) {
+            return new AggregateKey(transaction.getDate().getYear(), transaction.getDate().getMonthValue(),
+                    transaction.getType(), transaction.getCategory());
+        }
+    }
+
+    private record UserAggregateKey(UUID userId, AggregateKey key) {
+        static UserAggregateKey of(MonthlyAggregate row) {
+            return new UserAggregateKey(row.getUser().getId(),
+                    new AggregateKey(row.getYear(), row.getMonth(), row.getType(), row.getCategory()));
+        }
+    }
+
+    private record Totals(BigDecimal amount, long count) {
+        boolean matches(Totals other) {
+            return other != null && amount.compareTo(other.amount) == 0 && count == other.count;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.model.RecurringTransaction;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Tính ngày thực thi của tác vụ định kỳ theo công thức đóng: lần thứ k = startDate + k chu kỳ.
+ * Neo vào startDate (thay vì cộng dồn từ lần trước) nên tác vụ ngày 31 hằng tháng cho ra 28/2 rồi 31/3,
+ * không bị trôi về ngày 28 từ đó về sau.
+ */
+public final class RecurrenceSchedule {
+
+    private RecurrenceSchedule() {
+    }
+
+    /**
+     * Kết quả "bắt kịp" của một tác vụ.
+     *
+     * @param dates             các ngày cần sinh giao dịch (tăng dần, có thể rỗng)
+     * @param nextExecutionDate ngày thực thi tiếp theo cần lưu lại
+     * @param active            false nếu ngày tiếp theo đã vượt quá endDate
+     */
+    public record CatchUp(List<LocalDate> dates, LocalDate nextExecutionDate, boolean active) {
+    }
+
+    /**
+     * Tính mọi lần thực thi đến hạn từ nextExecutionDate đến min(today, endDate) mà không lặp qua từng lần lưu.
+     * Nếu nextExecutionDate không nằm trên lưới của startDate (dữ liệu cũ hoặc người dùng tự đặt),
+     * lưới được neo lại vào nextExecutionDate.
+     */
+    public static CatchUp catchUp(LocalDate startDate, LocalDate nextExecutionDate,
+                                  RecurringTransaction.Frequency frequency, LocalDate endDate, LocalDate today) {
+        ChronoUnit unit = unitOf(frequency);
+        LocalDate anchor = startDate;
+        long first = indexOf(startDate, nextExecutionDate, unit);
+        if (first < 0) {
+            anchor = nextExecutionDate;
+            first = 0;
+        }
+
+        LocalDate limit = endDate != null && endDate.isBefore(today) ? endDate : today;
+        if (nextExecutionDate.isAfter(limit)) {
+            // Ngày tiếp theo đã qua endDate (endDate bị hạ xuống sau khi tạo): không còn lần nào -> vô hiệu hóa
+            boolean ended = endDate != null && nextExecutionDate.isAfter(endDate);
+            return new CatchUp(List.of(), nextExecutionDate, !ended);
+        }
+
+        long last = floorIndex(anchor, limit, unit);
+        List<LocalDate> dates = new ArrayList<>((int) (last - first + 1));
+        for (long k = first; k <= last; k++) {
+            dates.add(anchor.plus(k, unit));
+        }
+
+        LocalDate following = anchor.plus(last + 1, unit);
+        // Nếu có ngày kết thúc và ngày tiếp theo vượt qua ngày kết thúc -> vô hiệu hóa (giữ ngày của lần cuối)
+        if (endDate != null && following.isAfter(endDate)) {
+            return new CatchUp(dates, dates.get(dates.size() - 1), false);
+        }
+        return new CatchUp(dates, following, true);
+    }
+
+    /**
+     * Duyệt lười các lần thực thi từ nextExecutionDate trở đi (đến endDate nếu có), không tạo danh sách;
+     * dùng cùng lưới với {@link #catchUp} nên ngày dự báo trùng với ngày bộ lập lịch sẽ sinh.
+     */
+    public static Iterator<LocalDate> occurrences(LocalDate startDate, LocalDate nextExecutionDate,
+                                                  RecurringTransaction.Frequency frequency, LocalDate endDate) {
+        ChronoUnit unit = unitOf(frequency);
+        long index = indexOf(startDate, nextExecutionDate, unit);
+        LocalDate anchor = index < 0 ? nextExecutionDate : startDate;
+        long first = Math.max(index, 0);
+        return new Iterator<>() {
+            private long k = first;
+
+            @Override
+            public boolean hasNext() {
+                return endDate == null || !anchor.plus(k, unit).isAfter(endDate);
+            }
+
+            @Override
+            public LocalDate next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return anchor.plus(k++, unit);
+            }
+        };
+    }
+
+    private static ChronoUnit unitOf(RecurringTransaction.Frequency frequency) {
+        switch (frequency) {
+            case DAILY:
+                return ChronoUnit.DAYS;
+            case WEEKLY:
+                return ChronoUnit.WEEKS;
+            case MONTHLY:
+                return ChronoUnit.MONTHS;
+            case YEARLY:
+                return ChronoUnit.YEARS;
+            default:
+                throw new IllegalArgumentException("Unknown frequency: " + frequency);
+        }
+    }
+
+    // k sao cho anchor + k chu kỳ == date, hoặc -1.
+    // between() đếm chu kỳ trọn vẹn nên có thể thiếu 1 khi ngày bị kẹp cuối tháng (31/1 + 1 tháng = 28/2)
+    private static long indexOf(LocalDate anchor, LocalDate date, ChronoUnit unit) {
+        long k = unit.between(anchor, date);
+        for (long candidate = Math.max(0, k); candidate <= k + 1; candidate++) {
+            if (anchor.plus(candidate, unit).equals(date)) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    // k lớn nhất sao cho anchor + k chu kỳ <= limit
+    private static long floorIndex(LocalDate anchor, LocalDate limit, ChronoUnit unit) {
+        long k = unit.between(anchor, limit);
+        while (!anchor.plus(k + 1, unit).isAfter(limit)) {
+            k++;
+        }
+        return k;
+    }
+}
@@ -2,102 +2,498 @@ package com.expensetracker.backend.service;
 
 import com.expensetracker.backend.model.RecurringTransaction;
 import com.expensetracker.backend.model.Transaction;
+import com.expensetracker.backend.model.User;
+import com.expensetracker.backend.repository.BudgetRepository;
 import com.expensetracker.backend.repository.RecurringTransactionRepository;
 import com.expensetracker.backend.repository.TransactionRepository; // Import TransactionRepository
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigInteger;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class RecurringTransactionScheduler {
 
     private static final Logger logger = LoggerFactory.getLogger(RecurringTransactionScheduler.class);
 
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
     @Autowired
     private RecurringTransactionRepository recurringRepository;
 
     @Autowired
     private TransactionRepository transactionRepository; // Sử dụng TransactionRepository để lưu
 
+    @Autowired
+    private BudgetRepository budgetRepository;
+
+    @Autowired
+    private MonthlyAggregateService aggregateService;
+
+    @Autowired
+    private UserBalanceService balanceService;
+
+    @Autowired
+    private DashboardCache dashboardCache;
+
+    @Autowired
+    private UserDataVersionService dataVersionService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RecurringWorkerPool workerPool;
+
+    // Số tác vụ định kỳ xử lý trong một transaction
+    @Value("${recurring.scheduler.chunk-size:200}")
+    private int chunkSize;
+
+    // Số phân vùng (theo người dùng) và số luồng xử lý chúng song song
+    @Value("${recurring.scheduler.partitions:1}")
+    private int partitions;
+
+    @Value("${recurring.scheduler.workers:1}")
+    private int workers;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Bật khi chạy nhiều server/nhiều luồng: các worker chia việc bằng cách "giữ chỗ" (lease) từng khối
+    @Value("${recurring.scheduler.claiming.enabled:false}")
+    private boolean claimingEnabled;
+
+    // Số worker (luồng) trên mỗi server trong chế độ giữ chỗ
+    @Value("${recurring.scheduler.claiming.workers:1}")
+    private int claimWorkers;
+
+    // Thời hạn giữ chỗ; phải dài hơn thời gian xử lý một khối
+    @Value("${recurring.scheduler.claiming.lease:PT10M}")
+    private Duration claimLease;
+
+    // Độ dài một lát (phút); lịch chạy là "0 */slice-minutes * * * ?" nên phải là ước của 60
+    @Value("${recurring.scheduler.slice-minutes:15}")
+    private int sliceMinutes;
+
+    // Độ trễ (ms) của lát gần nhất: thời điểm bắt đầu xử lý trừ mốc lẽ ra lát đó bắt đầu
+    // (thời gian chạy được đo riêng bởi sliceDuration)
+    private final AtomicLong sliceLagMillis = new AtomicLong();
+
+    private Timer sliceDuration;
+
+    @PostConstruct
+    void init() {
+        checkSliceMinutes(sliceMinutes);
+        TimeGauge.builder("recurring.scheduler.slice.lag", sliceLagMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Time between a slice's scheduled start and the moment its processing started")
+                .register(meterRegistry);
+        sliceDuration = meterRegistry.timer("recurring.scheduler.slice.duration");
+    }
+
+    // Lịch "*/N" chỉ đều khi N là ước của 60; nếu không, mốc làm tròn của lát lệch với lúc cron chạy
+    // và một số nhóm múi giờ bị bỏ qua hoặc chạy hai lần, nên dừng khởi động ngay
+    static void checkSliceMinutes(int sliceMinutes) {
+        if (sliceMinutes <= 0 || 60 % sliceMinutes != 0) {
+            throw new IllegalStateException("recurring.scheduler.slice-minutes must divide 60, got " + sliceMinutes);
+        }
+    }
+
     /**
-     * Chạy mỗi ngày vào lúc 2 giờ sáng theo giờ server.
+     * Chạy theo từng lát nhỏ trong ngày (mặc định mỗi 15 phút) thay vì một lần lúc 2 giờ sáng:
+     * mỗi lát xử lý người dùng ở những múi giờ vừa qua nửa đêm (theo giờ địa phương) kể từ lát trước,
+     * nên tải database trải đều trong ngày.
      * CRON: Giây Phút Giờ Ngày Tháng NgàyTrongTuần
      */
-    @Scheduled(cron = "0 0 2 * * ?")
-    @Transactional
+    @Scheduled(cron = "0 */${recurring.scheduler.slice-minutes:15} * * * ?")
     public void processRecurringTransactions() {
-        LocalDate today = LocalDate.now();
-        logger.info("Running RecurringTransactionScheduler for date: {}", today);
-
-        // 1. Lấy tất cả các tác vụ đang hoạt động và đã đến hạn hoặc quá hạn
-        List<RecurringTransaction> tasksToRun = recurringRepository
-                .findByIsActiveTrueAndNextExecutionDateLessThanEqual(today);
-
-        logger.info("Found {} recurring tasks to process.", tasksToRun.size());
-
-        for (RecurringTransaction task : tasksToRun) {
-            // --- BỘ NÃO CỦA HỆ THỐNG: VÒNG LẶP "BẮT KỊP" (CATCH-UP LOOP) ---
-            while (task.isActive() && !task.getNextExecutionDate().isAfter(today)) {
-                try {
-                    logger.info("Processing task ID: {} for execution date: {}", task.getId(), task.getNextExecutionDate());
-
-                    // 2. Tạo giao dịch thực tế dựa trên thông tin của tác vụ
-                    Transaction newTransaction = Transaction.builder()
-                            .user(task.getUser())
-                            .title(task.getTitle())
-                            .amount(task.getAmount())
-                            .category(task.getCategory())
-                            .type(task.getType())
-                            .date(task.getNextExecutionDate()) // Ngày giao dịch là ngày lẽ ra nó phải được thực thi
-                            .build();
-
-                    transactionRepository.save(newTransaction); // Lưu giao dịch mới
-
-                    // 3. Tính toán ngày thực thi tiếp theo
-                    LocalDate newNextExecutionDate = calculateNextExecutionDate(
-                            task.getNextExecutionDate(),
-                            task.getFrequency()
-                    );
-
-                    // 4. Cập nhật tác vụ định kỳ
-                    // Nếu có ngày kết thúc và ngày tiếp theo vượt qua ngày kết thúc -> vô hiệu hóa
-                    if (task.getEndDate() != null && newNextExecutionDate.isAfter(task.getEndDate())) {
-                        task.setActive(false);
-                        logger.info("Deactivating recurring task ID: {}. End date reached.", task.getId());
-                    } else {
-                        task.setNextExecutionDate(newNextExecutionDate);
-                    }
-
-                } catch (Exception e) {
-                    logger.error("Failed to process recurring task ID: {}. It will be retried next time.", task.getId(), e);
-                    // Dừng xử lý tác vụ này để tránh vòng lặp vô hạn nếu có lỗi nghiêm trọng
-                    break;
-                }
+        processSlice(Instant.now());
+    }
+
+    /**
+     * Một lát: gom các múi giờ có tác vụ đến hạn theo ngày địa phương của chúng tại thời điểm {@code now}
+     * rồi xử lý từng nhóm với "hôm nay" là ngày địa phương đó. Tác vụ đã xử lý có nextExecutionDate
+     * sau ngày địa phương nên các lát sau trong cùng ngày không chạm lại chúng.
+     *
+     * @return số giao dịch đã tạo
+     */
+    public long processSlice(Instant now) {
+        long lag = Duration.between(scheduledSliceStart(now), Instant.now()).toMillis();
+        sliceLagMillis.set(Math.max(0, lag));
+        long started = System.nanoTime();
+        long created = 0;
+        for (Map.Entry<LocalDate, List<String>> bucket : zonesByLocalDate(now).entrySet()) {
+            LocalDate localToday = bucket.getKey();
+            List<String> zones = bucket.getValue();
+            logger.debug("Recurring slice at {}: local date {} for zones {}", now, localToday, zones);
+            created += claimingEnabled
+                    ? processDueTransactionsClaiming(localToday, zones, claimWorkers)
+                    : processDueTransactions(localToday, zones, partitions, workers);
+        }
+        sliceDuration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        logger.info("Recurring slice at {} finished: {} transactions created, start lag {} ms.", now, created, lag);
+        return created;
+    }
+
+    // Mốc bắt đầu của lát chứa thời điểm now (làm tròn xuống theo slice-minutes)
+    private Instant scheduledSliceStart(Instant now) {
+        long sliceSeconds = TimeUnit.MINUTES.toSeconds(sliceMinutes);
+        return Instant.ofEpochSecond(Math.floorDiv(now.getEpochSecond(), sliceSeconds) * sliceSeconds);
+    }
+
+    // Ngày địa phương tại thời điểm now -> các múi giờ đang ở ngày đó (chỉ những múi giờ có tác vụ có thể đến hạn)
+    private Map<LocalDate, List<String>> zonesByLocalDate(Instant now) {
+        // Ngày địa phương muộn nhất trên thế giới (UTC+14)
+        LocalDate latestLocalDate = LocalDate.ofInstant(now, ZoneOffset.ofHours(14));
+        Map<LocalDate, List<String>> buckets = new TreeMap<>();
+        for (String zone : recurringRepository.findDueTimeZones(latestLocalDate)) {
+            buckets.computeIfAbsent(LocalDate.ofInstant(now, zoneOf(zone)), date -> new ArrayList<>()).add(zone);
+        }
+        return buckets;
+    }
+
+    private static ZoneId zoneOf(String zone) {
+        try {
+            return ZoneId.of(zone);
+        } catch (DateTimeException e) {
+            logger.warn("Unknown time zone '{}', using {} instead.", zone, User.DEFAULT_TIME_ZONE);
+            return ZoneId.of(User.DEFAULT_TIME_ZONE);
+        }
+    }
+
+    // Xử lý mọi người dùng (không phân biệt múi giờ) với cùng một ngày "hôm nay"
+    public long processDueTransactions(LocalDate today) {
+        return processDueTransactions(today, partitions, workers);
+    }
+
+    public long processDueTransactions(LocalDate today, int partitionCount, int workerCount) {
+        return processDueTransactions(today, recurringRepository.findDueTimeZones(today), partitionCount, workerCount);
+    }
+
+    /**
+     * Chia các tác vụ đến hạn (của người dùng thuộc các múi giờ {@code zones}) thành {@code partitionCount} phân vùng theo khoảng id người dùng
+     * (id là UUID ngẫu nhiên nên tương đương chia theo hash) và xử lý chúng song song trên {@code workerCount} luồng.
+     * Mọi tác vụ của một người dùng nằm cùng một phân vùng, nên các phân vùng không tranh khóa
+     * trên cùng dòng số dư/tổng hợp của người dùng. Mỗi phân vùng có metric riêng.
+     *
+     * @return số giao dịch đã tạo
+     */
+    public long processDueTransactions(LocalDate today, List<String> zones, int partitionCount, int workerCount) {
+        if (zones.isEmpty()) {
+            return 0;
+        }
+        logger.info("Running RecurringTransactionScheduler for date: {} ({} partitions, {} workers)",
+                today, partitionCount, workerCount);
+        List<Callable<Long>> jobs = new ArrayList<>();
+        for (int i = 0; i < partitionCount; i++) {
+            UserPartition partition = UserPartition.of(i, partitionCount);
+            jobs.add(() -> processPartition(today, zones, partition));
+        }
+        long created = workerPool.runAll(jobs, workerCount);
+        logger.info("Finished processing recurring tasks: {} transactions created.", created);
+        return created;
+    }
+
+    /**
+     * Xử lý các tác vụ đến hạn của một phân vùng theo từng khối, sắp xếp theo id.
+     * Mỗi khối commit trong transaction riêng (persistence context riêng, được giải phóng sau commit),
+     * nên lỗi chỉ làm mất khối đang chạy. Mỗi lần chạy luôn bắt đầu từ id nhỏ nhất: tác vụ đã xử lý
+     * có nextExecutionDate sau "hôm nay" nên không còn đến hạn, và nếu server sập giữa chừng,
+     * lần chạy sau chỉ gặp lại những tác vụ chưa được commit.
+     */
+    private long processPartition(LocalDate today, List<String> zones, UserPartition partition) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        PartitionMetrics metrics = PartitionMetrics.of(meterRegistry, partition.tag());
+        long started = System.nanoTime();
+
+        UUID after = FIRST_ID;
+        long created = 0;
+        int tasksProcessed = 0;
+        while (true) {
+            UUID chunkStart = after;
+            ChunkResult result;
+            try {
+                result = transactionTemplate.execute(status -> processChunk(today, zones, partition, chunkStart, chunkSize));
+            } catch (RuntimeException e) {
+                // Một tác vụ lỗi làm hỏng cả khối: chạy lại khối đó từng tác vụ một để cô lập tác vụ lỗi
+                logger.error("Recurring chunk after id {} in partition {} failed, retrying its tasks one by one.",
+                        chunkStart, partition.tag(), e);
+                result = processChunkIndividually(transactionTemplate, today, zones, partition, chunkStart, metrics);
             }
-            // 5. Lưu lại trạng thái cuối cùng của tác vụ (nextExecutionDate mới hoặc isActive=false)
-            recurringRepository.save(task);
-        }
-        logger.info("Finished processing recurring tasks.");
-    }
-
-    private LocalDate calculateNextExecutionDate(LocalDate current, RecurringTransaction.Frequency freq) {
-        switch (freq) {
-            case DAILY:
-                return current.plusDays(1);
-            case WEEKLY:
-                return current.plusWeeks(1);
-            case MONTHLY:
-                return current.plusMonths(1);
-            case YEARLY:
-                return current.plusYears(1);
-            default:
-                throw new IllegalArgumentException("Unknown frequency: " + freq);
+            if (result.tasks() == 0) {
+                break;
+            }
+            metrics.templates().increment(result.tasks());
+            metrics.created().increment(result.created());
+            created += result.created();
+            tasksProcessed += result.tasks();
+            after = result.lastId();
+        }
+
+        metrics.duration().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        logger.info("Partition {}: {} tasks, {} transactions created.", partition.tag(), tasksProcessed, created);
+        return created;
+    }
+
+    private ChunkResult processChunk(LocalDate today, List<String> zones, UserPartition partition,
+                                     UUID after, int limit) {
+        List<RecurringTransaction> tasks = recurringRepository.findDueAfter(
+                today, zones, partition.fromUserId(), partition.toUserId(), after, PageRequest.of(0, limit));
+        if (tasks.isEmpty()) {
+            return new ChunkResult(0, 0, after);
+        }
+        long created = 0;
+        BudgetDeltas budgetDeltas = new BudgetDeltas();
+        Set<UUID> touchedUsers = new HashSet<>();
+        for (RecurringTransaction task : tasks) {
+            created += processTask(task, today, budgetDeltas, touchedUsers);
+        }
+        // Một câu UPDATE cho mỗi nhóm (người dùng, danh mục, tháng, năm) của cả khối
+        finishChunk(budgetDeltas, touchedUsers);
+        UUID lastId = tasks.get(tasks.size() - 1).getId();
+        return new ChunkResult(tasks.size(), created, lastId);
+    }
+
+    private ChunkResult processChunkIndividually(TransactionTemplate transactionTemplate, LocalDate today,
+                                                 List<String> zones, UserPartition partition, UUID after,
+                                                 PartitionMetrics metrics) {
+        int tasks = 0;
+        long created = 0;
+        UUID cursor = after;
+        while (tasks < chunkSize) {
+            UUID position = cursor;
+            List<RecurringTransaction> next = transactionTemplate.execute(status -> recurringRepository.findDueAfter(
+                    today, zones, partition.fromUserId(), partition.toUserId(), position, PageRequest.of(0, 1)));
+            if (next == null || next.isEmpty()) {
+                break;
+            }
+            UUID taskId = next.get(0).getId();
+            try {
+                created += Objects.requireNonNull(transactionTemplate.execute(status ->
+                        processChunk(today, zones, partition, position, 1))).created();
+            } catch (RuntimeException e) {
+                // Bỏ qua tác vụ lỗi trong lần chạy này; nó vẫn đến hạn nên sẽ được thử lại lần sau
+                logger.error("Failed to process recurring task ID: {}. It will be retried next time.", taskId, e);
+                metrics.failures().increment();
+            }
+            cursor = taskId;
+            tasks++;
+        }
+        return new ChunkResult(tasks, created, cursor);
+    }
+
+    /**
+     * Chế độ nhiều worker: chạy {@code workers} worker song song trên server này;
+     * các server khác chạy cùng lúc sẽ chia việc qua cùng cơ chế giữ chỗ.
+     *
+     * @return số giao dịch đã tạo trên server này
+     */
+    public long processDueTransactionsClaiming(LocalDate today, int workers) {
+        return processDueTransactionsClaiming(today, recurringRepository.findDueTimeZones(today), workers);
+    }
+
+    public long processDueTransactionsClaiming(LocalDate today, List<String> zones, int workers) {
+        if (zones.isEmpty()) {
+            return 0;
+        }
+        logger.info("Running RecurringTransactionScheduler (claiming, {} workers) for date: {}", workers, today);
+        List<Callable<Long>> jobs = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            jobs.add(() -> runClaimWorker(today, zones));
+        }
+        long created = workerPool.runAll(jobs, workers);
+        logger.info("Finished processing recurring tasks (claiming): {} transactions created.", created);
+        return created;
+    }
+
+    /**
+     * Một worker: lặp lại "giữ chỗ một khối (commit) rồi xử lý khối đó (commit)" cho đến khi
+     * không còn tác vụ đến hạn nào chưa bị giữ. Tác vụ lỗi giữ nguyên lease và được thử lại sau khi lease hết hạn.
+     *
+     * @return số giao dịch worker này đã tạo
+     */
+    public long runClaimWorker(LocalDate today, List<String> zones) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long created = 0;
+        while (true) {
+            UUID token = UUID.randomUUID();
+            Integer claimed = transactionTemplate.execute(status -> claimChunk(today, zones, token));
+            if (claimed == null || claimed < 0) {
+                return created;
+            }
+            if (claimed == 0) {
+                // Worker khác đã giữ trước các ứng viên này; thử lại với ứng viên mới
+                continue;
+            }
+            try {
+                created += Objects.requireNonNull(transactionTemplate.execute(status -> processClaimed(today, token)));
+            } catch (RuntimeException e) {
+                logger.error("Claimed recurring chunk {} failed, retrying its tasks one by one.", token, e);
+                created += processClaimedIndividually(transactionTemplate, today, token);
+            }
+        }
+    }
+
+    // Trả về số dòng giữ được, hoặc -1 nếu không còn ứng viên nào
+    private int claimChunk(LocalDate today, List<String> zones, UUID token) {
+        LocalDateTime now = LocalDateTime.now();
+        List<UUID> candidates = recurringRepository.findClaimableIds(today, zones, now, PageRequest.of(0, chunkSize));
+        if (candidates.isEmpty()) {
+            return -1;
+        }
+        return recurringRepository.claim(candidates, token, now.plus(claimLease), today, now);
+    }
+
+    private long processClaimed(LocalDate today, UUID token) {
+        long created = 0;
+        BudgetDeltas budgetDeltas = new BudgetDeltas();
+        Set<UUID> touchedUsers = new HashSet<>();
+        for (RecurringTransaction task : recurringRepository.findClaimedForUpdate(token)) {
+            created += processTask(task, today, budgetDeltas, touchedUsers);
+        }
+        finishChunk(budgetDeltas, touchedUsers);
+        return created;
+    }
+
+    private long processClaimedIndividually(TransactionTemplate transactionTemplate, LocalDate today, UUID token) {
+        long created = 0;
+        List<UUID> ids = transactionTemplate.execute(status -> recurringRepository.findIdsByClaimToken(token));
+        for (UUID id : Objects.requireNonNull(ids)) {
+            try {
+                created += Objects.requireNonNull(transactionTemplate.execute(status ->
+                        recurringRepository.findByIdAndClaimToken(id, token).map(task -> {
+                            BudgetDeltas budgetDeltas = new BudgetDeltas();
+                            Set<UUID> touchedUsers = new HashSet<>();
+                            long count = processTask(task, today, budgetDeltas, touchedUsers);
+                            finishChunk(budgetDeltas, touchedUsers);
+                            return count;
+                        }).orElse(0L)));
+            } catch (RuntimeException e) {
+                logger.error("Failed to process recurring task ID: {}. It will be retried after its lease expires.", id, e);
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Sinh mọi lần thực thi còn thiếu của một tác vụ ("bắt kịp") và lưu trạng thái mới của nó.
+     * Các ngày được tính trước theo công thức đóng, giao dịch được ghi theo JDBC batch,
+     * tổng hợp/số dư được cập nhật một lần cho cả nhóm, và tác vụ chỉ được cập nhật một lần.
+     * Thay đổi ngân sách được gom vào {@code budgetDeltas} và người dùng bị ảnh hưởng vào {@code touchedUsers}
+     * để người gọi áp dụng một lần cho cả khối (xem {@link #finishChunk}).
+     *
+     * @return số giao dịch đã tạo
+     */
+    private long processTask(RecurringTransaction task, LocalDate today, BudgetDeltas budgetDeltas,
+                             Set<UUID> touchedUsers) {
+        RecurrenceSchedule.CatchUp catchUp = RecurrenceSchedule.catchUp(task.getStartDate(),
+                task.getNextExecutionDate(), task.getFrequency(), task.getEndDate(), today);
+        logger.debug("Processing task ID: {}: {} occurrences due", task.getId(), catchUp.dates().size());
+
+        // Tạo giao dịch thực tế cho từng ngày lẽ ra tác vụ phải được thực thi
+        List<Transaction> generated = new ArrayList<>(catchUp.dates().size());
+        for (LocalDate date : catchUp.dates()) {
+            generated.add(Transaction.builder()
+                    .user(task.getUser())
+                    .title(task.getTitle())
+                    .amount(task.getAmount())
+                    .category(task.getCategory())
+                    .type(task.getType())
+                    .date(date)
+                    .build());
+        }
+        UUID userId = task.getUser().getId();
+        if (!generated.isEmpty()) {
+            transactionRepository.saveAll(generated); // INSERT theo lô (hibernate.jdbc.batch_size)
+            aggregateService.addAll(userId, generated);
+            balanceService.applyDelta(userId, UserBalanceService.signedAmount(generated));
+            generated.forEach(transaction -> budgetDeltas.add(userId, transaction));
+        }
+
+        // Lưu lại trạng thái cuối cùng của tác vụ (nextExecutionDate mới hoặc isActive=false) và nhả lease
+        if (!catchUp.active()) {
+            logger.info("Deactivating recurring task ID: {}. End date reached.", task.getId());
+        }
+        task.setNextExecutionDate(catchUp.nextExecutionDate());
+        task.setActive(catchUp.active());
+        task.setClaimToken(null);
+        task.setClaimExpiresAt(null);
+        recurringRepository.save(task);
+        touchedUsers.add(userId);
+        return generated.size();
+    }
+
+    // Ngân sách trước, data_version sau cùng: cùng thứ tự khóa với TransactionService để không khóa chéo
+    private void finishChunk(BudgetDeltas budgetDeltas, Set<UUID> touchedUsers) {
+        budgetDeltas.applyTo(budgetRepository);
+        dashboardCache.evictUsers(touchedUsers);
+        dataVersionService.bumpAll(touchedUsers);
+    }
+
+    private record ChunkResult(int tasks, long created, UUID lastId) {
+    }
+
+    /**
+     * Phân vùng thứ {@code index}: khoảng id người dùng [fromUserId, toUserId] (theo thứ tự byte không dấu
+     * của database), chia đều không gian 64 bit cao của UUID.
+     */
+    private record UserPartition(int index, int count, UUID fromUserId, UUID toUserId) {
+
+        static UserPartition of(int index, int count) {
+            long from = boundary(index, count);
+            UUID to = index == count - 1
+                    ? new UUID(-1L, -1L)
+                    : new UUID(boundary(index + 1, count) - 1, -1L);
+            return new UserPartition(index, count, new UUID(from, 0L), to);
+        }
+
+        // index * 2^64 / count, tính bằng số học không dấu
+        private static long boundary(int index, int count) {
+            return BigInteger.valueOf(index).shiftLeft(64).divide(BigInteger.valueOf(count)).longValue();
+        }
+
+        String tag() {
+            return String.valueOf(index);
+        }
+    }
+
+    private record PartitionMetrics(Counter templates, Counter created, Counter failures, Timer duration) {
+
+        static PartitionMetrics of(MeterRegistry registry, String partition) {
+            return new PartitionMetrics(
+                    registry.counter("recurring.scheduler.templates.processed", "partition", partition),
+                    registry.counter("recurring.scheduler.transactions.created", "partition", partition),
+                    registry.counter("recurring.scheduler.failures", "partition", partition),
+                    registry.timer("recurring.scheduler.partition.duration", "partition", partition));
         }
     }
 }
\ No newline at end of file
@@ -17,7 +17,14 @@ public class RecurringTransactionService {
     @Autowired
     private RecurringTransactionRepository recurringRepository;
 
+    @Autowired
+    private UserDataVersionService dataVersionService;
+
+    /**
+     * @throws IllegalArgumentException nếu endDate trước startDate
+     */
     public RecurringTransaction createRecurringTransaction(RecurringTransaction rt, UUID userId) {
+        validateDates(rt);
         User userRef = new User();
         userRef.setId(userId);
         rt.setUser(userRef);
@@ -26,6 +33,7 @@ public class RecurringTransactionService {
         rt.setNextExecutionDate(rt.getStartDate());
         rt.setActive(true);
 
+        dataVersionService.bump(userId);
         return recurringRepository.save(rt);
     }
 
@@ -33,7 +41,11 @@ public class RecurringTransactionService {
         return recurringRepository.findByUser_Id(userId);
     }
 
+    /**
+     * @throws IllegalArgumentException nếu endDate trước startDate
+     */
     public RecurringTransaction updateRecurringTransaction(UUID id, RecurringTransaction details, UUID userId) {
+        validateDates(details);
         RecurringTransaction existing = recurringRepository.findByIdAndUser_Id(id, userId)
                 .orElseThrow(() -> new SecurityException("Recurring transaction not found or access denied"));
 
@@ -55,6 +67,7 @@ public class RecurringTransactionService {
         }
 
 
+        dataVersionService.bump(userId);
         return recurringRepository.save(existing);
     }
 
@@ -63,5 +76,13 @@ public class RecurringTransactionService {
                 .orElseThrow(() -> new SecurityException("Recurring transaction not found or access denied"));
 
         recurringRepository.delete(existing);
+        dataVersionService.bump(userId);
+    }
+
+    // Tác vụ kết thúc trước khi bắt đầu sẽ không bao giờ có lần thực thi nào
+    private static void validateDates(RecurringTransaction rt) {
+        if (rt.getStartDate() != null && rt.getEndDate() != null && rt.getEndDate().isBefore(rt.getStartDate())) {
+            throw new IllegalArgumentException("endDate must not be before startDate");
+        }
     }
 }
\ No newline at end of file
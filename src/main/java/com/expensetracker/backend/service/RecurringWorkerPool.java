@@ -0,0 +1,84 @@
+package com.expensetracker.backend.service;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool luồng dùng chung cho bộ lập lịch giao dịch định kỳ: được tạo một lần khi khởi động
+ * (kích thước theo recurring.scheduler.workers / claiming.workers) và dùng lại cho mọi lát,
+ * thay vì tạo và hủy một pool mới mỗi 15 phút. Được đóng khi ứng dụng dừng.
+ */
+@Component
+public class RecurringWorkerPool implements DisposableBean {
+
+    private final ExecutorService executor;
+
+    public RecurringWorkerPool(@Value("${recurring.scheduler.workers:1}") int workers,
+                               @Value("${recurring.scheduler.claiming.workers:1}") int claimWorkers) {
+        this.executor = Executors.newFixedThreadPool(Math.max(1, Math.max(workers, claimWorkers)),
+                new WorkerThreadFactory());
+    }
+
+    /**
+     * Chạy các job trên tối đa {@code parallelism} "làn" song song; mỗi làn lần lượt lấy job kế tiếp
+     * cho đến khi hết. Số luồng thực tế không vượt quá kích thước pool.
+     *
+     * @return tổng kết quả của các job
+     */
+    public long runAll(List<Callable<Long>> jobs, int parallelism) {
+        Queue<Callable<Long>> pending = new ConcurrentLinkedQueue<>(jobs);
+        List<Callable<Long>> lanes = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, Math.min(parallelism, jobs.size())); i++) {
+            lanes.add(() -> {
+                long total = 0;
+                Callable<Long> job;
+                while ((job = pending.poll()) != null) {
+                    total += job.call();
+                }
+                return total;
+            });
+        }
+        try {
+            long total = 0;
+            for (Future<Long> result : executor.invokeAll(lanes)) {
+                total += result.get();
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while processing recurring tasks", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Recurring worker failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "recurring-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
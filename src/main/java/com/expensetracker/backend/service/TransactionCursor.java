@@ -0,0 +1,45 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.dto.TransactionListItem;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Vị trí của giao dịch cuối cùng trong một trang keyset: (date, createdAt, id).
+ * Được mã hóa thành chuỗi base64url "mờ" để client chỉ việc gửi lại nguyên vẹn.
+ */
+public record TransactionCursor(LocalDate date, LocalDateTime createdAt, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static TransactionCursor of(TransactionListItem transaction) {
+        return new TransactionCursor(transaction.getDate(), transaction.getCreatedAt(), transaction.getId());
+    }
+
+    public String encode() {
+        String raw = date + SEPARATOR + createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Giải mã cursor do client gửi lên.
+     *
+     * @throws IllegalArgumentException nếu cursor không hợp lệ
+     */
+    public static TransactionCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new TransactionCursor(LocalDate.parse(parts[0]), LocalDateTime.parse(parts[1]), UUID.fromString(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
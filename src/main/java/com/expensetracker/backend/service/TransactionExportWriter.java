@@ -0,0 +1,90 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.dto.TransactionListItem;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Ghi từng dòng giao dịch ra Writer theo định dạng CSV hoặc NDJSON.
+ * Không giữ lại dòng nào trong bộ nhớ, nên dung lượng heap không phụ thuộc số dòng.
+ */
+@Component
+public class TransactionExportWriter {
+
+    public enum Format {
+        csv("text/csv"),
+        ndjson("application/x-ndjson");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    // Số dòng giữa hai lần flush để dữ liệu đi ra client đều đặn
+    private static final int FLUSH_EVERY = 1000;
+
+    private final ObjectMapper objectMapper;
+
+    public TransactionExportWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public long write(Stream<TransactionListItem> rows, Format format, Writer writer) throws IOException {
+        if (format == Format.csv) {
+            writer.write("id,date,type,category,title,amount\n");
+        }
+
+        long count = 0;
+        Iterator<TransactionListItem> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            TransactionListItem row = iterator.next();
+            if (format == Format.csv) {
+                writeCsvRow(row, writer);
+            } else {
+                writer.write(objectMapper.writeValueAsString(row));
+                writer.write('\n');
+            }
+            if (++count % FLUSH_EVERY == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    private void writeCsvRow(TransactionListItem row, Writer writer) throws IOException {
+        writer.write(String.valueOf(row.getId()));
+        writer.write(',');
+        writer.write(String.valueOf(row.getDate()));
+        writer.write(',');
+        writer.write(String.valueOf(row.getType()));
+        writer.write(',');
+        writer.write(escapeCsv(row.getCategory()));
+        writer.write(',');
+        writer.write(escapeCsv(row.getTitle()));
+        writer.write(',');
+        writer.write(row.getAmount().toPlainString());
+        writer.write('\n');
+    }
+
+    private static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
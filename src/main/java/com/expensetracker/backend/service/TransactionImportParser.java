@@ -0,0 +1,168 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.model.Transaction;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đọc file import (CSV có dòng tiêu đề, hoặc mảng JSON) thành danh sách Transaction chưa lưu.
+ * Các cột/trường bắt buộc: title, amount, date (yyyy-MM-dd), category, type (income|expense).
+ * Định dạng CSV tương thích với file xuất từ /api/transactions/export (cột id bị bỏ qua).
+ */
+@Component
+public class TransactionImportParser {
+
+    private final ObjectMapper objectMapper;
+
+    public TransactionImportParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @throws IllegalArgumentException nếu file sai định dạng, kèm số dòng/phần tử bị lỗi
+     */
+    public List<Transaction> parse(InputStream in, String filename) throws IOException {
+        if (filename != null && filename.toLowerCase().endsWith(".json")) {
+            return parseJson(in);
+        }
+        return parseCsv(in);
+    }
+
+    private List<Transaction> parseJson(InputStream in) throws IOException {
+        JsonNode root = objectMapper.readTree(in);
+        if (root == null || !root.isArray()) {
+            throw new IllegalArgumentException("JSON import must be an array of transactions");
+        }
+        List<Transaction> result = new ArrayList<>(root.size());
+        int index = 0;
+        for (JsonNode node : root) {
+            Map<String, String> fields = new HashMap<>();
+            node.properties().forEach(e -> fields.put(e.getKey(), e.getValue().asText()));
+            result.add(toTransaction(fields, "element " + index));
+            index++;
+        }
+        return result;
+    }
+
+    private List<Transaction> parseCsv(InputStream in) throws IOException {
+        CsvReader reader = new CsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        List<String> header = reader.readRecord();
+        if (header == null) {
+            return List.of();
+        }
+        header.set(0, stripBom(header.get(0)));
+
+        List<Transaction> result = new ArrayList<>();
+        List<String> values;
+        while ((values = reader.readRecord()) != null) {
+            if (values.size() == 1 && values.get(0).isBlank()) {
+                continue;
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                fields.put(header.get(i).trim(), values.get(i));
+            }
+            result.add(toTransaction(fields, "line " + reader.recordLine));
+        }
+        return result;
+    }
+
+    private Transaction toTransaction(Map<String, String> fields, String location) {
+        try {
+            return Transaction.builder()
+                    .title(required(fields, "title"))
+                    .amount(new BigDecimal(required(fields, "amount").trim()))
+                    .date(LocalDate.parse(required(fields, "date").trim()))
+                    .category(required(fields, "category"))
+                    .type(Transaction.TransactionType.valueOf(required(fields, "type").trim().toLowerCase()))
+                    .build();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid transaction at " + location + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String required(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("missing '" + name + "'");
+        }
+        return value;
+    }
+
+    private static String stripBom(String line) {
+        return line.startsWith("\uFEFF") ? line.substring(1) : line;
+    }
+
+    /**
+     * Đọc CSV theo từng bản ghi thay vì từng dòng: giá trị trong dấu ngoặc kép có thể chứa dấu phẩy,
+     * "" (dấu ngoặc kép thoát) và cả xuống dòng, đúng như file xuất từ TransactionExportWriter.
+     */
+    private static final class CsvReader {
+
+        private final Reader reader;
+        private int line = 1;
+        // Số dòng bắt đầu của bản ghi vừa đọc, dùng trong thông báo lỗi
+        private int recordLine;
+
+        CsvReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        // null khi đã hết dữ liệu
+        List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c < 0) {
+                return null;
+            }
+            recordLine = line;
+            List<String> values = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            while (c >= 0) {
+                if (c == '\n') {
+                    line++;
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        int next = reader.read();
+                        if (next == '"') {
+                            current.append('"');
+                        } else {
+                            quoted = false;
+                            c = next;
+                            continue;
+                        }
+                    } else {
+                        current.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(current.toString());
+                    current.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    current.append((char) c);
+                }
+                c = reader.read();
+            }
+            values.add(current.toString());
+            return values;
+        }
+    }
+}
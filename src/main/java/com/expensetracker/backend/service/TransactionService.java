@@ -1,12 +1,16 @@
 package com.expensetracker.backend.service;
 
-import com.expensetracker.backend.model.Budget;
+import com.expensetracker.backend.dto.CursorPage;
+import com.expensetracker.backend.dto.TransactionListItem;
 import com.expensetracker.backend.model.Transaction;
 import com.expensetracker.backend.model.User;
 import com.expensetracker.backend.repository.BudgetRepository;
 import com.expensetracker.backend.repository.TransactionRepository;
 import com.expensetracker.backend.service.specifications.TransactionSpecifications;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -15,30 +19,136 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+/**
+ * Mọi thao tác ghi giao dịch khóa các dòng phi chuẩn hóa theo cùng một thứ tự:
+ * monthly_aggregates, user_balances, budgets, rồi users (data_version) sau cùng,
+ * để các thao tác ghi đồng thời của cùng một người dùng không khóa chéo nhau (deadlock).
+ */
 @Service
 @Transactional
 public class TransactionService {
 
     private final TransactionRepository transactionRepository;
     private final BudgetRepository budgetRepository;
+    private final TransactionExportWriter exportWriter;
+    private final MonthlyAggregateService aggregateService;
+    private final UserBalanceService balanceService;
+    private final DashboardCache dashboardCache;
+    private final UserDataVersionService dataVersionService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${transactions.export.fetch-size:500}")
+    private int exportFetchSize;
+
+    // Flush theo đúng kích thước JDBC batch của Hibernate
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    private int importBatchSize;
 
     @Autowired
-    public TransactionService(TransactionRepository transactionRepository, BudgetRepository budgetRepository) {
+    public TransactionService(TransactionRepository transactionRepository, BudgetRepository budgetRepository,
+                              TransactionExportWriter exportWriter, MonthlyAggregateService aggregateService,
+                              UserBalanceService balanceService, DashboardCache dashboardCache,
+                              UserDataVersionService dataVersionService) {
         this.transactionRepository = transactionRepository;
         this.budgetRepository = budgetRepository;
+        this.exportWriter = exportWriter;
+        this.aggregateService = aggregateService;
+        this.balanceService = balanceService;
+        this.dashboardCache = dashboardCache;
+        this.dataVersionService = dataVersionService;
     }
 
-    public Page<Transaction> getFilteredTransactions(UUID userId, String type, String category, String search,
+    // Thứ tự cố định cho phân trang keyset; id là khóa phụ để thứ tự luôn xác định
+    private static final Sort KEYSET_SORT = Sort.by(
+            Sort.Order.desc("date"), Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    // Kích thước tối đa của một lát khi phân trang keyset
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
+    @Transactional(readOnly = true)
+    public Page<TransactionListItem> getFilteredTransactions(UUID userId, String type, String category, String search,
                                                      LocalDate dateFrom, LocalDate dateTo,
                                                      int page, int size, String[] sort) {
 
+        Specification<Transaction> spec = buildFilterSpec(userId, type, category, search, dateFrom, dateTo);
+
+        List<Sort.Order> orders = new ArrayList<>();
+        if (sort[0].contains(",")) {
+            for (String sortOrder : sort) {
+                String[] _sort = sortOrder.split(",");
+                orders.add(new Sort.Order(Sort.Direction.fromString(_sort[1]), _sort[0]));
+            }
+        } else {
+            orders.add(new Sort.Order(Sort.Direction.fromString(sort[1]), sort[0]));
+        }
+
+        Pageable pageable = PageRequest.of(page, size, Sort.by(orders));
+        // Projection trực tiếp, không tạo entity được quản lý
+        return transactionRepository.findListItems(spec, pageable);
+    }
+
+    /**
+     * Phân trang keyset (seek): lấy "lát" tiếp theo sau cursor, không dùng OFFSET và không chạy COUNT.
+     * Cursor rỗng hoặc null nghĩa là trang đầu tiên.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<TransactionListItem> getTransactionsAfterCursor(UUID userId, String type, String category, String search,
+                                                              LocalDate dateFrom, LocalDate dateTo,
+                                                              String cursor, int size) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+
+        Specification<Transaction> spec = buildFilterSpec(userId, type, category, search, dateFrom, dateTo);
+        if (cursor != null && !cursor.isEmpty()) {
+            TransactionCursor position = TransactionCursor.decode(cursor);
+            spec = spec.and(TransactionSpecifications.before(position.date(), position.createdAt(), position.id()));
+        }
+
+        // Lấy dư 1 bản ghi để biết còn trang sau hay không
+        List<TransactionListItem> rows = transactionRepository.findListItems(spec, KEYSET_SORT, size + 1);
+
+        boolean hasNext = rows.size() > size;
+        List<TransactionListItem> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? TransactionCursor.of(content.get(content.size() - 1)).encode() : null;
+
+        return new CursorPage<>(content, size, nextCursor, hasNext);
+    }
+
+    /**
+     * Xuất toàn bộ giao dịch khớp bộ lọc ra OutputStream, đọc trực tiếp từ con trỏ database.
+     * Transaction chỉ-đọc phải bao trọn việc tiêu thụ Stream.
+     *
+     * @return số dòng đã ghi
+     */
+    @Transactional(readOnly = true)
+    public long exportTransactions(UUID userId, String type, String category, String search,
+                                   LocalDate dateFrom, LocalDate dateTo,
+                                   TransactionExportWriter.Format format, OutputStream out) throws IOException {
+
+        Specification<Transaction> spec = buildFilterSpec(userId, type, category, search, dateFrom, dateTo);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Stream<TransactionListItem> rows = transactionRepository.streamListItems(spec, KEYSET_SORT, exportFetchSize)) {
+            return exportWriter.write(rows, format, writer);
+        }
+    }
+
+    private Specification<Transaction> buildFilterSpec(UUID userId, String type, String category, String search,
+                                                       LocalDate dateFrom, LocalDate dateTo) {
         Specification<Transaction> spec = TransactionSpecifications.withUserId(userId);
 
         if (type != null && !type.isEmpty() && !type.equalsIgnoreCase("all")) {
@@ -56,19 +166,7 @@ public class TransactionService {
         if (dateTo != null) {
             spec = spec.and(TransactionSpecifications.withDateTo(dateTo));
         }
-
-        List<Sort.Order> orders = new ArrayList<>();
-        if (sort[0].contains(",")) {
-            for (String sortOrder : sort) {
-                String[] _sort = sortOrder.split(",");
-                orders.add(new Sort.Order(Sort.Direction.fromString(_sort[1]), _sort[0]));
-            }
-        } else {
-            orders.add(new Sort.Order(Sort.Direction.fromString(sort[1]), sort[0]));
-        }
-
-        Pageable pageable = PageRequest.of(page, size, Sort.by(orders));
-        return transactionRepository.findAll(spec, pageable);
+        return spec;
     }
 
     public Transaction createTransaction(Transaction transaction, UUID userId) {
@@ -76,15 +174,52 @@ public class TransactionService {
         userReference.setId(userId);
         transaction.setUser(userReference);
         Transaction savedTransaction = transactionRepository.save(transaction);
+        aggregateService.add(userId, savedTransaction);
+        balanceService.applyDelta(userId, UserBalanceService.signedAmount(savedTransaction));
+        // Cập nhật budget bằng một câu UPDATE nguyên tử
+        new BudgetDeltas().add(userId, savedTransaction).applyTo(budgetRepository);
+        dashboardCache.evictUser(userId);
+        dataVersionService.bump(userId);
+
+        return savedTransaction;
+    }
 
-        // Logic cập nhật budget - Sửa lại thành chữ thường
-        if (savedTransaction.getType() == Transaction.TransactionType.expense) {
-            updateBudgetSpentAmount(userId, savedTransaction.getCategory(),
-                    savedTransaction.getDate().getYear(), savedTransaction.getDate().getMonthValue(),
-                    savedTransaction.getAmount());
+    /**
+     * Import hàng loạt giao dịch.
+     * Các entity được persist theo lô và flush/clear sau mỗi lô, để Hibernate gửi INSERT theo JDBC batch
+     * (id UUID được sinh sẵn trong bộ nhớ nên không cản batching) và persistence context không phình ra.
+     * Ngân sách được cập nhật một lần cho mỗi nhóm (danh mục, tháng, năm) thay vì mỗi dòng.
+     *
+     * @return số giao dịch đã import
+     */
+    public int importTransactions(List<Transaction> transactions, UUID userId) {
+        User userReference = entityManager.getReference(User.class, userId);
+        BudgetDeltas budgetDeltas = new BudgetDeltas();
+
+        int count = 0;
+        for (Transaction transaction : transactions) {
+            transaction.setId(null);
+            transaction.setUser(userReference);
+            entityManager.persist(transaction);
+
+            budgetDeltas.add(userId, transaction);
+
+            if (++count % importBatchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+                userReference = entityManager.getReference(User.class, userId);
+            }
         }
+        entityManager.flush();
+        entityManager.clear();
 
-        return savedTransaction;
+        aggregateService.addAll(userId, transactions);
+        balanceService.applyDelta(userId, UserBalanceService.signedAmount(transactions));
+        budgetDeltas.applyTo(budgetRepository);
+        dashboardCache.evictUser(userId);
+        dataVersionService.bump(userId);
+
+        return count;
     }
 
     public Transaction updateTransaction(UUID transactionId, Transaction transactionDetails, UUID userId) {
@@ -104,19 +239,18 @@ public class TransactionService {
         existingTransaction.setCategory(transactionDetails.getCategory());
         existingTransaction.setType(transactionDetails.getType());
         Transaction updatedTransaction = transactionRepository.save(existingTransaction);
-
-        // Logic cập nhật budget - Sửa lại thành chữ thường
-        if (oldTransaction.getType() == Transaction.TransactionType.expense) {
-            updateBudgetSpentAmount(userId, oldTransaction.getCategory(),
-                    oldTransaction.getDate().getYear(), oldTransaction.getDate().getMonthValue(),
-                    oldTransaction.getAmount().negate());
-        }
-
-        if (updatedTransaction.getType() == Transaction.TransactionType.expense) {
-            updateBudgetSpentAmount(userId, updatedTransaction.getCategory(),
-                    updatedTransaction.getDate().getYear(), updatedTransaction.getDate().getMonthValue(),
-                    updatedTransaction.getAmount());
-        }
+        aggregateService.subtract(userId, oldTransaction);
+        aggregateService.add(userId, updatedTransaction);
+        // Số dư chỉ nhận thay đổi ròng của lần sửa
+        balanceService.applyDelta(userId, UserBalanceService.signedAmount(updatedTransaction)
+                .subtract(UserBalanceService.signedAmount(oldTransaction)));
+        // Gộp thay đổi cũ/mới: cùng danh mục và tháng thì chỉ một UPDATE với chênh lệch ròng
+        new BudgetDeltas()
+                .subtract(userId, oldTransaction)
+                .add(userId, updatedTransaction)
+                .applyTo(budgetRepository);
+        dashboardCache.evictUser(userId);
+        dataVersionService.bump(userId);
 
         return updatedTransaction;
     }
@@ -126,23 +260,11 @@ public class TransactionService {
                 .filter(t -> t.getUser().getId().equals(userId))
                 .orElseThrow(() -> new SecurityException("Transaction not found or access denied to delete"));
 
-        // Logic cập nhật budget - Sửa lại thành chữ thường
-        if (transactionToDelete.getType() == Transaction.TransactionType.expense) {
-            updateBudgetSpentAmount(userId, transactionToDelete.getCategory(),
-                    transactionToDelete.getDate().getYear(), transactionToDelete.getDate().getMonthValue(),
-                    transactionToDelete.getAmount().negate());
-        }
-
         transactionRepository.delete(transactionToDelete);
-    }
-
-    private void updateBudgetSpentAmount(UUID userId, String category, int year, int month, BigDecimal amountChange) {
-        Optional<Budget> budgetOpt = budgetRepository.findByUser_IdAndCategoryAndMonthAndYear(userId, category, month, year);
-
-        budgetOpt.ifPresent(budget -> {
-            BigDecimal newSpentAmount = budget.getSpentAmount().add(amountChange);
-            budget.setSpentAmount(newSpentAmount);
-            budgetRepository.save(budget);
-        });
+        aggregateService.subtract(userId, transactionToDelete);
+        balanceService.applyDelta(userId, UserBalanceService.signedAmount(transactionToDelete).negate());
+        new BudgetDeltas().subtract(userId, transactionToDelete).applyTo(budgetRepository);
+        dashboardCache.evictUser(userId);
+        dataVersionService.bump(userId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.expensetracker.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+@Service
+public class UserBalanceReconciliationScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserBalanceReconciliationScheduler.class);
+
+    @Autowired
+    private UserBalanceService balanceService;
+
+    /**
+     * Chạy mỗi ngày (mặc định 3 giờ sáng, sau bộ lập lịch giao dịch định kỳ)
+     * để phát hiện và sửa sai lệch giữa user_balances và bảng transactions.
+     */
+    @Scheduled(cron = "${balance.reconciliation.cron:0 0 3 * * ?}")
+    public void reconcileBalances() {
+        logger.info("Running balance reconciliation...");
+        long repaired = balanceService.reconcile();
+        logger.info("Balance reconciliation finished: {} balances repaired.", repaired);
+    }
+}
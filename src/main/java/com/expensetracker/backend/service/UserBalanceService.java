@@ -0,0 +1,158 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.model.Transaction;
+import com.expensetracker.backend.model.UserBalance;
+import com.expensetracker.backend.repository.TransactionRepository;
+import com.expensetracker.backend.repository.UserBalanceRepository;
+import com.expensetracker.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Duy trì số dư lũy kế của người dùng (bảng user_balances).
+ * Mỗi thao tác ghi giao dịch gọi applyDelta đúng MỘT lần với thay đổi ròng của nó,
+ * trong cùng transaction với thao tác ghi.
+ */
+@Service
+public class UserBalanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserBalanceService.class);
+
+    private final UserBalanceRepository balanceRepository;
+    private final TransactionRepository transactionRepository;
+    private final UserRepository userRepository;
+    private final UserDataVersionService dataVersionService;
+    private final DashboardCache dashboardCache;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${balance.reconciliation.user-chunk-size:500}")
+    private int userChunkSize;
+
+    public UserBalanceService(UserBalanceRepository balanceRepository,
+                              TransactionRepository transactionRepository,
+                              UserRepository userRepository,
+                              UserDataVersionService dataVersionService,
+                              DashboardCache dashboardCache,
+                              PlatformTransactionManager transactionManager) {
+        this.balanceRepository = balanceRepository;
+        this.transactionRepository = transactionRepository;
+        this.userRepository = userRepository;
+        this.dataVersionService = dataVersionService;
+        this.dashboardCache = dashboardCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Ảnh hưởng của một giao dịch lên số dư: +amount cho thu nhập, -amount cho chi tiêu.
+     */
+    public static BigDecimal signedAmount(Transaction transaction) {
+        return transaction.getType() == Transaction.TransactionType.income
+                ? transaction.getAmount()
+                : transaction.getAmount().negate();
+    }
+
+    public static BigDecimal signedAmount(Collection<Transaction> transactions) {
+        return transactions.stream().map(UserBalanceService::signedAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    /**
+     * Áp dụng thay đổi ròng của một thao tác ghi (phải gọi SAU khi đã ghi giao dịch).
+     * Nếu người dùng chưa có dòng số dư (dữ liệu cũ), dòng được khởi tạo từ tổng thực tế,
+     * vốn đã bao gồm thay đổi vừa ghi, nên delta không được cộng thêm lần nữa.
+     * Nếu một transaction song song khởi tạo trước, tổng của nó chưa thấy thay đổi (chưa commit) của ta,
+     * nên delta được cộng vào dòng của nó.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyDelta(UUID userId, BigDecimal delta) {
+        if (delta.signum() == 0) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int updated = balanceRepository.applyDelta(userId, delta, now);
+        if (updated == 0
+                && balanceRepository.insertIfAbsent(userId, transactionRepository.sumBalanceByUserId(userId), now) == 0) {
+            balanceRepository.applyDelta(userId, delta, now);
+        }
+    }
+
+    /**
+     * Đọc số dư O(1). Với người dùng cũ chưa có dòng số dư, tính trực tiếp từ giao dịch
+     * cho đến khi job đối soát (hoặc lần ghi tiếp theo) tạo dòng.
+     */
+    @Transactional(readOnly = true)
+    public BigDecimal getBalance(UUID userId) {
+        return balanceRepository.findById(userId)
+                .map(UserBalance::getBalance)
+                .orElseGet(() -> transactionRepository.sumBalanceByUserId(userId));
+    }
+
+    /**
+     * Đối soát toàn bộ số dư với tổng thực tế từ bảng transactions, theo từng khối người dùng,
+     * và sửa các dòng bị lệch hoặc còn thiếu. Người dùng bị sửa số dư được tăng phiên bản dữ liệu
+     * và xóa khỏi cache dashboard trong cùng transaction.
+     *
+     * @return số người dùng có số dư bị sửa
+     */
+    public long reconcile() {
+        long repaired = 0;
+        UUID after = new UUID(0L, 0L);
+        List<UUID> userIds;
+        while (!(userIds = userRepository.findIdsAfter(after, PageRequest.of(0, userChunkSize))).isEmpty()) {
+            List<UUID> chunk = userIds;
+            repaired += Objects.requireNonNull(transactionTemplate.execute(status -> reconcileChunk(chunk)));
+            after = userIds.get(userIds.size() - 1);
+        }
+        return repaired;
+    }
+
+    private long reconcileChunk(List<UUID> userIds) {
+        // Khóa trước rồi mới tính tổng thực tế: giao dịch đã commit đều được tính,
+        // giao dịch đang chạy sẽ cộng delta của nó sau khi khối này commit
+        Map<UUID, UserBalance> stored = new HashMap<>();
+        balanceRepository.findAllForUpdate(userIds).forEach(b -> stored.put(b.getUserId(), b));
+
+        Map<UUID, BigDecimal> live = new HashMap<>();
+        for (Object[] row : transactionRepository.sumBalanceByUserIds(userIds)) {
+            live.put((UUID) row[0], (BigDecimal) row[1]);
+        }
+
+        long repaired = 0;
+        List<UUID> drifted = new ArrayList<>();
+        for (UUID userId : userIds) {
+            BigDecimal actual = live.getOrDefault(userId, BigDecimal.ZERO);
+            UserBalance balance = stored.get(userId);
+            if (balance == null) {
+                balanceRepository.save(UserBalance.builder().userId(userId).balance(actual).build());
+                if (actual.signum() != 0) {
+                    repaired++;
+                }
+            } else if (balance.getBalance().compareTo(actual) != 0) {
+                logger.warn("Balance drift for user {}: stored={}, actual={}", userId, balance.getBalance(), actual);
+                balance.setBalance(actual);
+                drifted.add(userId);
+                repaired++;
+            }
+        }
+        // Dòng vừa tạo không đổi số dư hiển thị (getBalance đã tính từ tổng thực tế), chỉ dòng bị lệch mới đổi
+        dataVersionService.bumpAll(drifted);
+        dashboardCache.evictUsers(drifted);
+        return repaired;
+    }
+}
@@ -0,0 +1,44 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Phiên bản dữ liệu tăng dần của mỗi người dùng (cột users.data_version).
+ * Mọi thao tác ghi giao dịch, ngân sách và giao dịch định kỳ tăng phiên bản trong cùng transaction,
+ * nên phiên bản chỉ thay đổi khi dữ liệu đã commit thay đổi.
+ */
+@Service
+public class UserDataVersionService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void bump(UUID userId) {
+        userRepository.incrementDataVersion(userId);
+    }
+
+    // Dùng cho các job đối soát/dựng lại/lập lịch: một câu UPDATE cho cả khối người dùng
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void bumpAll(Collection<UUID> userIds) {
+        if (!userIds.isEmpty()) {
+            userRepository.incrementDataVersions(userIds);
+        }
+    }
+
+    /**
+     * Phải được đọc TRƯỚC khi tính dữ liệu trả về: nếu có ghi chen giữa,
+     * ETag cũ chỉ làm client tải lại ở lần sau chứ không bao giờ giữ dữ liệu cũ với ETag mới.
+     */
+    @Transactional(readOnly = true)
+    public long getVersion(UUID userId) {
+        return userRepository.findDataVersionById(userId).orElse(0L);
+    }
+}
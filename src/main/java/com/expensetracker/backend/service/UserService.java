@@ -2,12 +2,15 @@ package com.expensetracker.backend.service;
 
 import com.expensetracker.backend.model.User;
 import com.expensetracker.backend.repository.UserRepository;
+import com.expensetracker.backend.security.services.PrincipalCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.security.crypto.password.PasswordEncoder; // Sẽ dùng sau cho mã hóa mật khẩu
 
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -17,13 +20,16 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder; // Sẽ inject sau khi cấu hình Spring Security
+    private final PrincipalCache principalCache;
 
     // Constructor Injection để Spring tự động inject UserRepository
     // @Autowired là không cần thiết nếu chỉ có một constructor
-    public UserService(UserRepository userRepository, Optional<PasswordEncoder> passwordEncoder) {
+    public UserService(UserRepository userRepository, Optional<PasswordEncoder> passwordEncoder,
+                       PrincipalCache principalCache) {
         this.userRepository = userRepository;
         // Inject PasswordEncoder nếu nó tồn tại (sau khi cấu hình Spring Security)
         this.passwordEncoder = passwordEncoder.orElse(null);
+        this.principalCache = principalCache;
     }
 
     @Transactional(readOnly = true) // Đánh dấu phương thức này chỉ để đọc, tối ưu hóa giao dịch
@@ -65,6 +71,10 @@ public class UserService {
         }
 
 
+        if (user.getTimeZone() != null) {
+            user.setTimeZone(normalizeTimeZone(user.getTimeZone()));
+        }
+
         // Các trường createdAt và updatedAt đã được tự động xử lý bởi @PrePersist trong Entity
         return userRepository.save(user);
     }
@@ -84,6 +94,11 @@ public class UserService {
                 System.err.println("Warning: PasswordEncoder not available. Not updating password hash.");
             }
         }
+        if (userDetails.getTimeZone() != null) {
+            user.setTimeZone(normalizeTimeZone(userDetails.getTimeZone()));
+        }
+        // Request tiếp theo của người dùng phải thấy thông tin mới
+        principalCache.invalidate(id);
         // updatedAt đã được tự động xử lý bởi @PreUpdate trong Entity
         return userRepository.save(user);
     }
@@ -94,5 +109,20 @@ public class UserService {
             throw new RuntimeException("User not found with id: " + id);
         }
         userRepository.deleteById(id);
+        // Token còn hạn của người dùng đã xóa không còn xác thực được
+        principalCache.invalidate(id);
+    }
+
+    /**
+     * Kiểm tra và chuẩn hóa tên múi giờ IANA (vd "Asia/Ho_Chi_Minh").
+     *
+     * @throws IllegalArgumentException nếu múi giờ không hợp lệ
+     */
+    public static String normalizeTimeZone(String timeZone) {
+        try {
+            return ZoneId.of(timeZone.trim()).getId();
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid time zone: " + timeZone);
+        }
     }
-}
\ No newline at end of file
+}
@@ -4,6 +4,7 @@ import com.expensetracker.backend.model.Transaction;
 import org.springframework.data.jpa.domain.Specification;
 import jakarta.persistence.criteria.Predicate;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.UUID;
 
 public class TransactionSpecifications {
@@ -42,4 +43,22 @@ public class TransactionSpecifications {
             return criteriaBuilder.or(titleLike, categoryLike);
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * Điều kiện keyset cho thứ tự (date DESC, createdAt DESC, id DESC):
+     * chỉ lấy các bản ghi đứng SAU vị trí (date, createdAt, id) đã cho.
+     */
+    public static Specification<Transaction> before(LocalDate date, LocalDateTime createdAt, UUID id) {
+        return (root, query, criteriaBuilder) -> {
+            Predicate earlierDate = criteriaBuilder.lessThan(root.get("date"), date);
+            Predicate sameDate = criteriaBuilder.equal(root.get("date"), date);
+            Predicate earlierCreatedAt = criteriaBuilder.lessThan(root.get("createdAt"), createdAt);
+            Predicate sameCreatedAt = criteriaBuilder.equal(root.get("createdAt"), createdAt);
+            Predicate smallerId = criteriaBuilder.lessThan(root.get("id"), id);
+            return criteriaBuilder.or(
+                    earlierDate,
+                    criteriaBuilder.and(sameDate, earlierCreatedAt),
+                    criteriaBuilder.and(sameDate, sameCreatedAt, smallerId));
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package com.expensetracker.backend.controller;
+
+import com.expensetracker.backend.model.Transaction;
+import com.expensetracker.backend.model.User;
+import com.expensetracker.backend.service.TransactionService;
+import com.expensetracker.backend.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:testdb;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;NON_KEYWORDS=MONTH,YEAR",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "jwt.secret=THIS_IS_A_TEST_SECRET_32CHARS_MIN_LENGTH_1234567890",
+        "jwt.access.expiration.ms=900000",
+        "jwt.refresh.expiration.ms=604800000",
+        "server.port=0",
+        "gemini.api.key=dummy-test-key"
+})
+class TransactionExportIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    UserService userService;
+
+    @Autowired
+    TransactionService transactionService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    // Export chạy async với timeout riêng (transactions.export.timeout=10m), không dùng timeout async chung
+    @Test
+    void export_streamsRowsWithItsOwnAsyncTimeout() throws Exception {
+        String username = "dave_" + UUID.randomUUID();
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setName("Tester " + username);
+        user.setPasswordHash("password123");
+        user = userService.createUser(user);
+        transactionService.createTransaction(Transaction.builder().title("Rent").category("Housing")
+                .amount(new BigDecimal("300.00")).date(LocalDate.of(2025, 6, 1))
+                .type(Transaction.TransactionType.expense).build(), user.getId());
+
+        String response = mockMvc.perform(post("/api/auth/signin")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("username", username, "password", "password123"))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String token = objectMapper.readTree(response).get("token").asText();
+
+        MvcResult result = mockMvc.perform(get("/api/transactions/export").param("format", "csv")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(600_000L);
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"transactions.csv\""))
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("Rent")));
+    }
+}
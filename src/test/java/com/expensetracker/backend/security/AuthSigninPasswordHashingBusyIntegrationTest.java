@@ -0,0 +1,92 @@
+package com.expensetracker.backend.security;
+
+import com.expensetracker.backend.exception.GlobalExceptionHandler;
+import com.expensetracker.backend.exception.PasswordHashingBusyException;
+import com.expensetracker.backend.payload.response.MessageResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        // H2 in-memory
+        "spring.datasource.url=jdbc:h2:mem:testdb;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;NON_KEYWORDS=MONTH,YEAR",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        // JWT properties (bắt buộc cho JwtUtils)
+        "jwt.secret=THIS_IS_A_TEST_SECRET_32CHARS_MIN_LENGTH_1234567890",
+        "jwt.access.expiration.ms=900000",
+        "jwt.refresh.expiration.ms=604800000",
+        "server.port=0",
+        // Thêm giá trị giả cho gemini api key để Spring không báo lỗi thiếu placeholder
+        "gemini.api.key=dummy-test-key"
+})
+class AuthSigninPasswordHashingBusyIntegrationTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    // Pool băm mật khẩu luôn quá tải
+    @MockitoBean
+    PasswordEncoder passwordEncoder;
+
+    // Người dùng không tồn tại vẫn được băm (chống dò tài khoản theo thời gian): quá tải phải trả 503, không phải 401
+    @Test
+    void signin_shouldReturn503_forUnknownUser_whenPasswordHashingIsBusy() throws Exception {
+        PasswordHashingBusyException busy = new PasswordHashingBusyException("Too many concurrent sign-in requests, please retry shortly");
+        when(passwordEncoder.encode(any())).thenThrow(busy);
+        when(passwordEncoder.matches(any(), any())).thenThrow(busy);
+
+        String body = objectMapper.writeValueAsString(Map.of(
+                "username", "nobody_" + UUID.randomUUID(),
+                "password", "password123"
+        ));
+
+        mockMvc.perform(post("/api/auth/signin")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.message").exists());
+    }
+
+    // Cùng lỗi nhưng đã bị DaoAuthenticationProvider bọc lại (lỗi trong lúc tải người dùng)
+    @Test
+    void wrappedPasswordHashingBusy_isStillMappedTo503() {
+        PasswordHashingBusyException busy = new PasswordHashingBusyException("Password hashing timed out, please retry shortly");
+
+        ResponseEntity<MessageResponse> response = new GlobalExceptionHandler()
+                .handleInternalAuthenticationServiceException(new InternalAuthenticationServiceException(busy.getMessage(), busy));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertThrows(InternalAuthenticationServiceException.class, () -> new GlobalExceptionHandler()
+                .handleInternalAuthenticationServiceException(new InternalAuthenticationServiceException("db down")));
+    }
+}
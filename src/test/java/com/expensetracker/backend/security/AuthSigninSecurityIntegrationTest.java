@@ -1,8 +1,11 @@
 package com.expensetracker.backend.security;
 
 import com.expensetracker.backend.model.User;
+import com.expensetracker.backend.security.jwt.JwtUtils;
+import com.expensetracker.backend.service.RefreshTokenService;
 import com.expensetracker.backend.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +19,7 @@ import java.util.Map;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.options;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -24,7 +28,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc
 @TestPropertySource(properties = {
         // H2 in-memory
-        "spring.datasource.url=jdbc:h2:mem:testdb;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.datasource.url=jdbc:h2:mem:testdb;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;NON_KEYWORDS=MONTH,YEAR",
         "spring.datasource.driver-class-name=org.h2.Driver",
         "spring.jpa.hibernate.ddl-auto=create-drop",
         "spring.jpa.show-sql=false",
@@ -48,6 +52,15 @@ class AuthSigninSecurityIntegrationTest {
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    RefreshTokenService refreshTokenService;
+
+    @Autowired
+    JwtUtils jwtUtils;
+
     private static class TestUser {
         String username;
         String password;
@@ -159,4 +172,51 @@ class AuthSigninSecurityIntegrationTest {
                         .header("Origin", "http://localhost:5173"))
                 .andExpect(status().is4xxClientError()); // 400/422 tùy validator
     }
-}
\ No newline at end of file
+
+    // Test 6: Principal dựng từ claims của token (không truy vấn); token không có claims dùng cache principal.
+    // Xóa người dùng phải thu hồi ngay cả hai loại token
+    @Test
+    void authenticatedRequests_avoidUserLookups_untilUserIsDeleted() throws Exception {
+        TestUser tu = new TestUser("carol_" + UUID.randomUUID());
+        User user = createUser(tu);
+
+        String body = objectMapper.writeValueAsString(Map.of(
+                "username", tu.username,
+                "password", tu.password
+        ));
+        String response = mockMvc.perform(post("/api/auth/signin")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String token = objectMapper.readTree(response).get("token").asText();
+        String legacyToken = jwtUtils.generateTokenFromUserId(user.getId().toString());
+
+        double lookupsBefore = principalCacheGets("hit") + principalCacheGets("miss");
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/recurring-transactions").header("Authorization", "Bearer " + token))
+                    .andExpect(status().isOk());
+        }
+        assertThat(principalCacheGets("hit") + principalCacheGets("miss")).isEqualTo(lookupsBefore);
+
+        double hitsBefore = principalCacheGets("hit");
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/recurring-transactions").header("Authorization", "Bearer " + legacyToken))
+                    .andExpect(status().isOk());
+        }
+        // Request đầu nạp principal từ database, hai request sau lấy từ cache
+        assertThat(principalCacheGets("hit") - hitsBefore).isEqualTo(2.0);
+
+        refreshTokenService.deleteByUserId(user.getId());
+        userService.deleteUser(user.getId());
+        mockMvc.perform(get("/api/recurring-transactions").header("Authorization", "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/recurring-transactions").header("Authorization", "Bearer " + legacyToken))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private double principalCacheGets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "principals").tag("result", result)
+                .functionCounter().count();
+    }
+}
@@ -0,0 +1,145 @@
+package com.expensetracker.backend.security;
+
+import com.expensetracker.backend.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(3);
+
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+        if (encoder != null) {
+            encoder.destroy();
+        }
+    }
+
+    // Encoder giả: mỗi lần băm chờ đến khi test cho phép, để giữ pool ở trạng thái bận
+    private PasswordEncoder blockingDelegate() {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hash:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encode(rawPassword).equals(encodedPassword);
+            }
+        };
+    }
+
+    @Test
+    void delegatesToBCrypt() {
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 4, Duration.ofSeconds(5), meterRegistry);
+
+        String hash = encoder.encode("password123");
+
+        assertTrue(encoder.matches("password123", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertEquals(1, meterRegistry.get("password.hashing.duration").tag("operation", "encode").timer().count());
+        assertEquals(2, meterRegistry.get("password.hashing.duration").tag("operation", "matches").timer().count());
+    }
+
+    @Test
+    void rejectsImmediatelyWhenPoolAndQueueAreFull() throws Exception {
+        encoder = new BoundedPasswordEncoder(blockingDelegate(), 1, 1, Duration.ofSeconds(30), meterRegistry);
+
+        Future<String> running = callers.submit(() -> encoder.encode("a"));
+        awaitGauge("password.hashing.active", 1);
+        Future<String> queued = callers.submit(() -> encoder.encode("b"));
+        awaitGauge("password.hashing.queue.depth", 1);
+
+        // Luồng thứ ba không bị chặn: bị từ chối ngay
+        long started = System.nanoTime();
+        assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("c"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 1000);
+        assertEquals(1.0, meterRegistry.get("password.hashing.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("hash:a", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash:b", queued.get(5, TimeUnit.SECONDS));
+        assertEquals(0.0, meterRegistry.get("password.hashing.queue.depth").gauge().value());
+    }
+
+    @Test
+    void givesUpAfterMaxWait() {
+        encoder = new BoundedPasswordEncoder(blockingDelegate(), 1, 1, Duration.ofMillis(100), meterRegistry);
+
+        assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("a"));
+        assertEquals(1.0, meterRegistry.get("password.hashing.rejected").counter().count());
+    }
+
+    @Test
+    void rejectsWithoutWaitingWhenTheQueueCannotStartWithinMaxWait() throws Exception {
+        // Mỗi lần băm mất ít nhất 300ms; "block" giữ luồng của pool đến khi test cho phép
+        PasswordEncoder slow = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                try {
+                    Thread.sleep(300);
+                    if (rawPassword.toString().startsWith("block")) {
+                        release.await();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hash:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encode(rawPassword).equals(encodedPassword);
+            }
+        };
+        encoder = new BoundedPasswordEncoder(slow, 1, 8, Duration.ofMillis(500), meterRegistry);
+        assertEquals("hash:warm-up", encoder.encode("warm-up"));
+
+        callers.submit(() -> encoder.encode("block-a"));
+        awaitGauge("password.hashing.active", 1);
+        callers.submit(() -> encoder.encode("block-b"));
+        awaitGauge("password.hashing.queue.depth", 1);
+        callers.submit(() -> encoder.encode("block-c"));
+        awaitGauge("password.hashing.queue.depth", 2);
+
+        // Hai lượt đang chờ x ~300ms > 500ms: bị từ chối ngay, không chờ hết maxWait
+        long started = System.nanoTime();
+        assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("d"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 200);
+    }
+
+    private void awaitGauge(String name, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get(name).gauge().value() != expected) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for " + name);
+            Thread.sleep(10);
+        }
+    }
+}
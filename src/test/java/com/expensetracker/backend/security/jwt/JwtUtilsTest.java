@@ -0,0 +1,150 @@
+package com.expensetracker.backend.security.jwt;
+
+import com.expensetracker.backend.model.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilsTest {
+
+    private static final String SECRET = "THIS_IS_A_TEST_SECRET_32CHARS_MIN_LENGTH_1234567890";
+
+    private JwtUtils jwtUtils;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtils = newJwtUtils(900000);
+        user = User.builder()
+                .id(UUID.randomUUID())
+                .username("testuser")
+                .email("test@example.com")
+                .build();
+    }
+
+    private JwtUtils newJwtUtils(int accessExpirationMs) {
+        return newJwtUtils(accessExpirationMs, new JwtKeyProperties());
+    }
+
+    private JwtUtils newJwtUtils(int accessExpirationMs, JwtKeyProperties keyProperties) {
+        JwtUtils utils = new JwtUtils();
+        ReflectionTestUtils.setField(utils, "keyProperties", keyProperties);
+        ReflectionTestUtils.setField(utils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(utils, "jwtAccessExpirationMs", accessExpirationMs);
+        ReflectionTestUtils.setField(utils, "jwtRefreshExpirationMs", 604800000L);
+        ReflectionTestUtils.setField(utils, "verifiedCacheMaxSize", 100L);
+        utils.init();
+        return utils;
+    }
+
+    @Test
+    void parseVerifiedClaims_returnsSubjectAndPrincipalClaims() {
+        Optional<Claims> claims = jwtUtils.parseVerifiedClaims(jwtUtils.generateTokenFromUser(user));
+
+        assertTrue(claims.isPresent());
+        assertEquals(user.getId().toString(), claims.get().getSubject());
+        assertEquals("testuser", claims.get().get(JwtUtils.CLAIM_USERNAME, String.class));
+        assertEquals("test@example.com", claims.get().get(JwtUtils.CLAIM_EMAIL, String.class));
+        assertNotNull(claims.get().getIssuedAt());
+    }
+
+    @Test
+    void parseVerifiedClaims_rejectsTamperedAndExpiredTokens() {
+        String token = jwtUtils.generateTokenFromUser(user);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        assertTrue(jwtUtils.parseVerifiedClaims(tampered).isEmpty());
+
+        String expired = newJwtUtils(-1000).generateTokenFromUser(user);
+        assertTrue(jwtUtils.parseVerifiedClaims(expired).isEmpty());
+        assertTrue(jwtUtils.parseVerifiedClaims("not-a-jwt").isEmpty());
+    }
+
+    @Test
+    void parseVerifiedClaims_servesRepeatedTokenFromCache_butNeverATamperedOne() {
+        String token = jwtUtils.generateTokenFromUser(user);
+        Claims first = jwtUtils.parseVerifiedClaims(token).orElseThrow();
+
+        // Lần thứ hai không xác minh lại: cùng đối tượng claims đã lưu
+        assertSame(first, jwtUtils.parseVerifiedClaims(token).orElseThrow());
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        assertTrue(jwtUtils.parseVerifiedClaims(tampered).isEmpty());
+        // Giữ nguyên chữ ký, sửa payload: digest khác nên phải xác minh lại, và chữ ký không khớp
+        String[] parts = token.split("\\.");
+        String payload = parts[1].substring(0, parts[1].length() - 1) + (parts[1].endsWith("A") ? "B" : "A");
+        String forgedPayload = parts[0] + "." + payload + "." + parts[2];
+        assertTrue(jwtUtils.parseVerifiedClaims(forgedPayload).isEmpty());
+    }
+
+    @Test
+    void parseVerifiedClaims_dropsCachedTokenOnceItExpires() throws InterruptedException {
+        JwtUtils shortLived = newJwtUtils(1000);
+        String token = shortLived.generateTokenFromUser(user);
+        assertTrue(shortLived.parseVerifiedClaims(token).isPresent());
+
+        // exp tính theo giây nên chờ quá hạn ít nhất một giây
+        Thread.sleep(2100);
+        assertTrue(shortLived.parseVerifiedClaims(token).isEmpty());
+    }
+
+    @Test
+    void rotatedKeyset_signsWithNewestKey_andAcceptsOlderKeysUntilRetired() {
+        String legacyToken = jwtUtils.generateTokenFromUser(user);
+        // Token phát hành trước khi có kid vẫn được xác minh bằng khóa mặc định
+        String tokenWithoutKid = Jwts.builder()
+                .setSubject(user.getId().toString())
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS256)
+                .compact();
+
+        JwtUtils rotated = newJwtUtils(900000, keys(key("2025-10", null)));
+        String rotatedToken = rotated.generateTokenFromUser(user);
+        assertEquals("2025-10", kidOf(rotatedToken));
+        assertTrue(rotated.parseVerifiedClaims(legacyToken).isPresent());
+        assertTrue(rotated.parseVerifiedClaims(tokenWithoutKid).isPresent());
+        assertTrue(rotated.parseVerifiedClaims(rotatedToken).isPresent());
+        // Server chưa biết khóa mới từ chối kid lạ
+        assertTrue(jwtUtils.parseVerifiedClaims(rotatedToken).isEmpty());
+
+        // Khóa 2025-10 đã quá accept-until: token ký bằng nó bị từ chối, token mới ký bằng 2025-11
+        JwtUtils retired = newJwtUtils(900000, keys(
+                key("2025-10", Instant.now().minusSeconds(60)), key("2025-11", null)));
+        assertTrue(retired.parseVerifiedClaims(rotatedToken).isEmpty());
+        assertEquals("2025-11", kidOf(retired.generateTokenFromUser(user)));
+    }
+
+    private static JwtKeyProperties keys(JwtKeyProperties.SigningKey... keys) {
+        JwtKeyProperties properties = new JwtKeyProperties();
+        properties.setKeys(List.of(keys));
+        return properties;
+    }
+
+    private static JwtKeyProperties.SigningKey key(String id, Instant acceptUntil) {
+        JwtKeyProperties.SigningKey key = new JwtKeyProperties.SigningKey();
+        key.setId(id);
+        key.setSecret("ROTATED_SECRET_" + id + "_32CHARS_MIN_LENGTH_1234567890");
+        key.setAcceptUntil(acceptUntil);
+        return key;
+    }
+
+    private static String kidOf(String token) {
+        String header = new String(Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.'))),
+                StandardCharsets.UTF_8);
+        return header.replaceAll(".*\"kid\":\"([^\"]+)\".*", "$1");
+    }
+}
@@ -0,0 +1,106 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.model.RecurringTransaction.Frequency;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecurrenceScheduleTest {
+
+    @Test
+    void dailyBacklogIsComputedInOnePass() {
+        LocalDate start = LocalDate.of(2023, 1, 1);
+        LocalDate today = LocalDate.of(2024, 12, 31);
+
+        RecurrenceSchedule.CatchUp catchUp = RecurrenceSchedule.catchUp(start, start, Frequency.DAILY, null, today);
+
+        assertEquals(731, catchUp.dates().size());
+        assertEquals(start, catchUp.dates().get(0));
+        assertEquals(today, catchUp.dates().get(730));
+        assertEquals(LocalDate.of(2025, 1, 1), catchUp.nextExecutionDate());
+        assertTrue(catchUp.active());
+    }
+
+    @Test
+    void monthlyScheduleStaysAnchoredToMonthEnd() {
+        LocalDate start = LocalDate.of(2025, 1, 31);
+
+        RecurrenceSchedule.CatchUp catchUp = RecurrenceSchedule.catchUp(start, LocalDate.of(2025, 2, 28),
+                Frequency.MONTHLY, null, LocalDate.of(2025, 4, 30));
+
+        assertEquals(List.of(LocalDate.of(2025, 2, 28), LocalDate.of(2025, 3, 31), LocalDate.of(2025, 4, 30)),
+                catchUp.dates());
+        assertEquals(LocalDate.of(2025, 5, 31), catchUp.nextExecutionDate());
+    }
+
+    @Test
+    void endDateDeactivatesAndKeepsLastOccurrence() {
+        LocalDate start = LocalDate.of(2025, 3, 3);
+
+        RecurrenceSchedule.CatchUp catchUp = RecurrenceSchedule.catchUp(start, start,
+                Frequency.WEEKLY, LocalDate.of(2025, 3, 20), LocalDate.of(2025, 6, 1));
+
+        assertEquals(List.of(LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 10), LocalDate.of(2025, 3, 17)),
+                catchUp.dates());
+        assertFalse(catchUp.active());
+        assertEquals(LocalDate.of(2025, 3, 17), catchUp.nextExecutionDate());
+    }
+
+    @Test
+    void nextExecutionAfterEndDateDeactivatesWithoutOccurrences() {
+        LocalDate start = LocalDate.of(2025, 3, 1);
+
+        RecurrenceSchedule.CatchUp catchUp = RecurrenceSchedule.catchUp(start, LocalDate.of(2025, 5, 1),
+                Frequency.MONTHLY, LocalDate.of(2025, 4, 15), LocalDate.of(2025, 6, 1));
+
+        assertTrue(catchUp.dates().isEmpty());
+        assertFalse(catchUp.active());
+        assertEquals(LocalDate.of(2025, 5, 1), catchUp.nextExecutionDate());
+    }
+
+    @Test
+    void offGridNextExecutionDateBecomesTheAnchor() {
+        RecurrenceSchedule.CatchUp catchUp = RecurrenceSchedule.catchUp(LocalDate.of(2025, 1, 1),
+                LocalDate.of(2025, 1, 10), Frequency.WEEKLY, null, LocalDate.of(2025, 1, 24));
+
+        assertEquals(List.of(LocalDate.of(2025, 1, 10), LocalDate.of(2025, 1, 17), LocalDate.of(2025, 1, 24)),
+                catchUp.dates());
+        assertEquals(LocalDate.of(2025, 1, 31), catchUp.nextExecutionDate());
+    }
+
+    @Test
+    void nothingIsDueBeforeNextExecutionDate() {
+        LocalDate next = LocalDate.of(2025, 5, 1);
+
+        RecurrenceSchedule.CatchUp catchUp = RecurrenceSchedule.catchUp(LocalDate.of(2025, 1, 1), next,
+                Frequency.MONTHLY, null, LocalDate.of(2025, 4, 30));
+
+        assertTrue(catchUp.dates().isEmpty());
+        assertEquals(next, catchUp.nextExecutionDate());
+        assertTrue(catchUp.active());
+    }
+
+    @Test
+    void occurrencesAreExpandedLazilyOnTheSameGrid() {
+        Iterator<LocalDate> dates = RecurrenceSchedule.occurrences(LocalDate.of(2025, 1, 31), LocalDate.of(2025, 2, 28),
+                Frequency.MONTHLY, LocalDate.of(2025, 4, 30));
+
+        List<LocalDate> expanded = new ArrayList<>();
+        dates.forEachRemaining(expanded::add);
+        assertEquals(List.of(LocalDate.of(2025, 2, 28), LocalDate.of(2025, 3, 31), LocalDate.of(2025, 4, 30)), expanded);
+        assertThrows(NoSuchElementException.class, dates::next);
+
+        // Không có ngày kết thúc: chuỗi vô hạn, chỉ tính khi được đọc
+        Iterator<LocalDate> open = RecurrenceSchedule.occurrences(LocalDate.of(2025, 1, 1), LocalDate.of(2030, 1, 1),
+                Frequency.YEARLY, null);
+        assertEquals(LocalDate.of(2030, 1, 1), open.next());
+        assertEquals(LocalDate.of(2031, 1, 1), open.next());
+        assertTrue(open.hasNext());
+    }
+}
@@ -0,0 +1,309 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.model.Budget;
+import com.expensetracker.backend.model.RecurringTransaction;
+import com.expensetracker.backend.model.Transaction;
+import com.expensetracker.backend.model.User;
+import com.expensetracker.backend.repository.BudgetRepository;
+import com.expensetracker.backend.repository.RecurringTransactionRepository;
+import com.expensetracker.backend.repository.TransactionRepository;
+import com.expensetracker.backend.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:recurringschedulerdb;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000;NON_KEYWORDS=MONTH,YEAR",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "recurring.scheduler.chunk-size=10",
+        "recurring.scheduler.workers=4",
+        "jwt.secret=THIS_IS_A_TEST_SECRET_32CHARS_MIN_LENGTH_1234567890",
+        "jwt.access.expiration.ms=900000",
+        "jwt.refresh.expiration.ms=604800000",
+        "gemini.api.key=dummy-test-key"
+})
+class RecurringTransactionSchedulerIntegrationTest {
+
+    @Autowired
+    private RecurringTransactionScheduler scheduler;
+
+    @Autowired
+    private RecurringTransactionRepository recurringRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserDataVersionService dataVersionService;
+
+    @Autowired
+    private RecurringTransactionService recurringService;
+
+    @Autowired
+    private BudgetRepository budgetRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = newUser();
+    }
+
+    private User newUser() {
+        return newUser(null);
+    }
+
+    private User newUser(String timeZone) {
+        String username = "r" + UUID.randomUUID().toString().substring(0, 8);
+        return userRepository.save(User.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .name("Recurring User")
+                .passwordHash("hash")
+                .timeZone(timeZone)
+                .build());
+    }
+
+    // Tác vụ chạy hằng ngày từ start đến end (bao gồm), tự vô hiệu hóa sau ngày end
+    private List<RecurringTransaction> dailyTemplates(int count, LocalDate start, LocalDate end) {
+        return dailyTemplates(user, count, start, end);
+    }
+
+    private List<RecurringTransaction> dailyTemplates(User owner, int count, LocalDate start, LocalDate end) {
+        List<RecurringTransaction> templates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            templates.add(recurringRepository.save(RecurringTransaction.builder()
+                    .user(owner)
+                    .title("Template " + i)
+                    .amount(new BigDecimal("2.00"))
+                    .category("Subscriptions")
+                    .type(Transaction.TransactionType.expense)
+                    .frequency(RecurringTransaction.Frequency.DAILY)
+                    .startDate(start)
+                    .nextExecutionDate(start)
+                    .endDate(end)
+                    .build()));
+        }
+        // Thứ tự id của database (so sánh byte không dấu), khác với UUID.compareTo của Java
+        templates.sort(Comparator.comparing(template -> template.getId().toString()));
+        return templates;
+    }
+
+    private long transactionCount() {
+        return transactionRepository.findByUser_Id(user.getId(), Pageable.unpaged()).getTotalElements();
+    }
+
+    @Test
+    void processesAllDueTemplatesAcrossChunks() {
+        LocalDate today = LocalDate.of(2025, 3, 10);
+        List<RecurringTransaction> templates = dailyTemplates(25, today.minusDays(2), today);
+
+        assertEquals(75, scheduler.processDueTransactions(today));
+        assertEquals(75, transactionCount());
+        for (RecurringTransaction template : templates) {
+            assertFalse(recurringRepository.findById(template.getId()).orElseThrow().isActive());
+        }
+
+        // Chạy lại trong ngày không tạo trùng
+        assertEquals(0, scheduler.processDueTransactions(today));
+    }
+
+    @Test
+    void restartsFromFirstIdAfterAnInterruptedRun() {
+        LocalDate today = LocalDate.of(2025, 5, 10);
+        List<RecurringTransaction> templates = dailyTemplates(12, today, today);
+
+        // Giả lập lần chạy bị dừng sau khi đã commit 5 tác vụ đầu tiên (đã sang lần thực thi kế tiếp)
+        for (RecurringTransaction template : templates.subList(0, 5)) {
+            template.setNextExecutionDate(today.plusDays(1));
+            template.setActive(false);
+            recurringRepository.save(template);
+        }
+
+        // Duyệt lại từ đầu nhưng chỉ gặp 7 tác vụ còn đến hạn
+        assertEquals(7, scheduler.processDueTransactions(today));
+        assertEquals(7, transactionCount());
+        for (RecurringTransaction template : templates) {
+            assertFalse(recurringRepository.findById(template.getId()).orElseThrow().isActive());
+        }
+        assertEquals(0, scheduler.processDueTransactions(today));
+    }
+
+    @Test
+    void concurrentClaimingWorkersGenerateEachOccurrenceExactlyOnce() throws Exception {
+        LocalDate today = LocalDate.of(2025, 7, 20);
+        dailyTemplates(60, today.minusDays(2), today);
+
+        // 4 "server" chạy cùng lúc, mỗi server 2 worker, trên cùng một database
+        ExecutorService nodes = Executors.newFixedThreadPool(4);
+        long created = 0;
+        try {
+            List<Future<Long>> runs = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                runs.add(nodes.submit(() -> scheduler.processDueTransactionsClaiming(today, 2)));
+            }
+            for (Future<Long> run : runs) {
+                created += run.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            nodes.shutdownNow();
+        }
+
+        assertEquals(180, created);
+        List<Transaction> transactions = transactionRepository.findByUser_Id(user.getId(), Pageable.unpaged()).getContent();
+        assertEquals(180, transactions.size());
+        Set<String> occurrences = new HashSet<>();
+        for (Transaction transaction : transactions) {
+            assertTrue(occurrences.add(transaction.getTitle() + "@" + transaction.getDate()),
+                    "Duplicate occurrence " + transaction.getTitle() + " on " + transaction.getDate());
+        }
+        assertTrue(recurringRepository.findByUser_Id(user.getId()).stream()
+                .allMatch(template -> template.getClaimToken() == null && !template.isActive()));
+    }
+
+    @Test
+    void partitionedWorkersProcessEveryUserOnceAndRecordMetrics() {
+        LocalDate today = LocalDate.of(2025, 9, 15);
+        List<User> owners = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            User owner = newUser();
+            owners.add(owner);
+            dailyTemplates(owner, 5, today.minusDays(1), today);
+        }
+        double templatesBefore = templatesProcessedMetric();
+
+        assertEquals(80, scheduler.processDueTransactions(today, 4, 4));
+
+        for (User owner : owners) {
+            assertEquals(10, transactionRepository.findByUser_Id(owner.getId(), Pageable.unpaged()).getTotalElements());
+        }
+        assertEquals(40, templatesProcessedMetric() - templatesBefore, 0.001);
+
+        // Lần chạy sau dùng lại cùng pool: các luồng worker vẫn sống và không sinh thêm luồng mới
+        dailyTemplates(newUser(), 5, today, today);
+        assertEquals(5, scheduler.processDueTransactions(today, 4, 4));
+        long workerThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("recurring-worker-"))
+                .count();
+        assertTrue(workerThreads >= 1 && workerThreads <= 4, "Expected 1-4 recurring workers, found " + workerThreads);
+    }
+
+    private double templatesProcessedMetric() {
+        return meterRegistry.find("recurring.scheduler.templates.processed").counters().stream()
+                .mapToDouble(Counter::count).sum();
+    }
+
+    @Test
+    void templateWhoseEndDateWasLoweredIsDeactivatedOnce() {
+        LocalDate today = LocalDate.of(2025, 11, 10);
+        RecurringTransaction template = dailyTemplates(1, today.minusDays(5), null).get(0);
+        // Ngày kết thúc bị hạ xuống trước ngày thực thi tiếp theo
+        template.setNextExecutionDate(today.minusDays(1));
+        template.setEndDate(today.minusDays(3));
+        recurringRepository.save(template);
+
+        long version = dataVersionService.getVersion(user.getId());
+        assertEquals(0, scheduler.processDueTransactions(today));
+        assertFalse(recurringRepository.findById(template.getId()).orElseThrow().isActive());
+        assertEquals(version + 1, dataVersionService.getVersion(user.getId()));
+
+        // Không còn đến hạn: các lần chạy sau không chạm lại tác vụ và không làm mất hiệu lực ETag
+        assertEquals(0, scheduler.processDueTransactions(today));
+        assertEquals(version + 1, dataVersionService.getVersion(user.getId()));
+
+        // API không cho tạo tác vụ kết thúc trước khi bắt đầu
+        RecurringTransaction invalid = RecurringTransaction.builder()
+                .title("Invalid").amount(new BigDecimal("1.00")).category("Misc")
+                .type(Transaction.TransactionType.expense).frequency(RecurringTransaction.Frequency.DAILY)
+                .startDate(today).endDate(today.minusDays(1)).build();
+        assertThrows(IllegalArgumentException.class,
+                () -> recurringService.createRecurringTransaction(invalid, user.getId()));
+    }
+
+    @Test
+    void generatedExpensesAreAppliedToBudgets() {
+        LocalDate today = LocalDate.of(2025, 10, 5);
+        budgetRepository.save(Budget.builder().user(user).category("Subscriptions")
+                .amount(new BigDecimal("500.00")).month(10).year(2025).build());
+        budgetRepository.save(Budget.builder().user(user).category("Subscriptions")
+                .amount(new BigDecimal("500.00")).month(9).year(2025).build());
+
+        // 3 tác vụ x 7 ngày (29/9 -> 5/10): 2 ngày rơi vào tháng 9, 5 ngày vào tháng 10
+        dailyTemplates(3, LocalDate.of(2025, 9, 29), today);
+        assertEquals(21, scheduler.processDueTransactions(today));
+
+        assertEquals(0, new BigDecimal("30.00").compareTo(budgetRepository
+                .findByUser_IdAndCategoryAndMonthAndYear(user.getId(), "Subscriptions", 10, 2025).orElseThrow().getSpentAmount()));
+        assertEquals(0, new BigDecimal("12.00").compareTo(budgetRepository
+                .findByUser_IdAndCategoryAndMonthAndYear(user.getId(), "Subscriptions", 9, 2025).orElseThrow().getSpentAmount()));
+    }
+
+    @Test
+    void sliceMinutesMustDivideAnHour() {
+        RecurringTransactionScheduler.checkSliceMinutes(15);
+        RecurringTransactionScheduler.checkSliceMinutes(60);
+        assertThrows(IllegalStateException.class, () -> RecurringTransactionScheduler.checkSliceMinutes(7));
+        assertThrows(IllegalStateException.class, () -> RecurringTransactionScheduler.checkSliceMinutes(45));
+        assertThrows(IllegalStateException.class, () -> RecurringTransactionScheduler.checkSliceMinutes(0));
+    }
+
+    @Test
+    void slicesProcessUsersWhoseLocalMidnightHasPassed() {
+        User hanoi = newUser("Asia/Ho_Chi_Minh");  // UTC+7
+        User newYork = newUser("America/New_York"); // UTC-5 vào tháng 1
+        LocalDate newYear = LocalDate.of(2025, 1, 1);
+        dailyTemplates(hanoi, 1, newYear, newYear);
+        dailyTemplates(newYork, 1, newYear, newYear);
+
+        // 18:00 UTC ngày 31/12: Hà Nội đã sang 01:00 ngày 1/1, New York vẫn là 13:00 ngày 31/12
+        scheduler.processSlice(Instant.parse("2024-12-31T18:00:00Z"));
+        assertEquals(List.of(newYear), transactionDates(hanoi));
+        assertEquals(List.of(), transactionDates(newYork));
+
+        // 05:15 UTC ngày 1/1: New York vừa qua nửa đêm
+        scheduler.processSlice(Instant.parse("2025-01-01T05:15:00Z"));
+        assertEquals(List.of(newYear), transactionDates(hanoi));
+        assertEquals(List.of(newYear), transactionDates(newYork));
+        assertFalse(recurringRepository.findByUser_Id(newYork.getId()).get(0).isActive());
+
+        assertEquals("UTC", userRepository.findById(user.getId()).orElseThrow().getTimeZone());
+        assertTrue(meterRegistry.get("recurring.scheduler.slice.lag").timeGauge().value(TimeUnit.MILLISECONDS) > 0);
+    }
+
+    private List<LocalDate> transactionDates(User owner) {
+        return transactionRepository.findByUser_Id(owner.getId(), Pageable.unpaged()).stream()
+                .map(Transaction::getDate)
+                .toList();
+    }
+}
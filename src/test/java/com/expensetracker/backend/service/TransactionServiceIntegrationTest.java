@@ -0,0 +1,637 @@
+package com.expensetracker.backend.service;
+
+import com.expensetracker.backend.dto.BudgetDTO;
+import com.expensetracker.backend.dto.CashFlowForecast;
+import com.expensetracker.backend.dto.CursorPage;
+import com.expensetracker.backend.dto.DashboardStats;
+import com.expensetracker.backend.dto.TransactionListItem;
+import com.expensetracker.backend.model.Budget;
+import com.expensetracker.backend.model.RecurringTransaction;
+import com.expensetracker.backend.model.SchedulerCheckpoint;
+import com.expensetracker.backend.model.Transaction;
+import com.expensetracker.backend.model.User;
+import com.expensetracker.backend.model.UserBalance;
+import com.expensetracker.backend.dto.BudgetReconciliationReport;
+import com.expensetracker.backend.repository.BudgetRepository;
+import com.expensetracker.backend.repository.MonthlyAggregateRepository;
+import com.expensetracker.backend.repository.RecurringTransactionRepository;
+import com.expensetracker.backend.repository.SchedulerCheckpointRepository;
+import com.expensetracker.backend.repository.TransactionRepository;
+import com.expensetracker.backend.repository.UserBalanceRepository;
+import com.expensetracker.backend.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:transactionservicedb;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000;NON_KEYWORDS=MONTH,YEAR",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "jwt.secret=THIS_IS_A_TEST_SECRET_32CHARS_MIN_LENGTH_1234567890",
+        "jwt.access.expiration.ms=900000",
+        "jwt.refresh.expiration.ms=604800000",
+        "gemini.api.key=dummy-test-key"
+})
+class TransactionServiceIntegrationTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BudgetService budgetService;
+
+    @Autowired
+    private TransactionImportParser importParser;
+
+    @Autowired
+    private DashboardService dashboardService;
+
+    @Autowired
+    private MonthlyAggregateService aggregateService;
+
+    @Autowired
+    private UserBalanceService balanceService;
+
+    @Autowired
+    private UserBalanceRepository balanceRepository;
+
+    @Autowired
+    private MonthlyAggregateRepository aggregateRepository;
+
+    @Autowired
+    private DashboardCache dashboardCache;
+
+    @Autowired
+    private UserDataVersionService dataVersionService;
+
+    @Autowired
+    private BudgetReconciliationService budgetReconciliationService;
+
+    @Autowired
+    private BudgetRepository budgetRepository;
+
+    @Autowired
+    private SchedulerCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CashFlowForecastService forecastService;
+
+    @Autowired
+    private RecurringTransactionRepository recurringRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        String username = "u" + UUID.randomUUID().toString().substring(0, 8);
+        User user = userRepository.save(User.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .name("Test User")
+                .passwordHash("hash")
+                .build());
+        userId = user.getId();
+    }
+
+    private Transaction expense(String title, String category, String amount, LocalDate date) {
+        return Transaction.builder()
+                .title(title)
+                .category(category)
+                .amount(new BigDecimal(amount))
+                .date(date)
+                .type(Transaction.TransactionType.expense)
+                .build();
+    }
+
+    @Test
+    void keysetPagination_walksAllRowsInOrderWithoutDuplicates() {
+        // Nhiều giao dịch cùng ngày để kiểm tra khóa phụ createdAt/id
+        for (int i = 0; i < 25; i++) {
+            transactionService.createTransaction(
+                    expense("T" + i, "Food", "1.00", LocalDate.of(2025, 1, 1 + (i % 5))), userId);
+        }
+
+        List<TransactionListItem> seen = new ArrayList<>();
+        String cursor = "";
+        int pages = 0;
+        while (cursor != null) {
+            CursorPage<TransactionListItem> slice = transactionService.getTransactionsAfterCursor(
+                    userId, null, null, null, null, null, cursor, 10);
+            seen.addAll(slice.getContent());
+            cursor = slice.getNextCursor();
+            pages++;
+        }
+
+        assertEquals(3, pages);
+        assertEquals(25, seen.size());
+        Set<UUID> ids = new HashSet<>();
+        seen.forEach(t -> ids.add(t.getId()));
+        assertEquals(25, ids.size());
+        for (int i = 1; i < seen.size(); i++) {
+            assertFalse(seen.get(i).getDate().isAfter(seen.get(i - 1).getDate()), "Dates must be non-increasing");
+        }
+    }
+
+    @Test
+    void keysetPagination_appliesFilters() {
+        transactionService.createTransaction(expense("Lunch", "Food", "5.00", LocalDate.of(2025, 2, 1)), userId);
+        transactionService.createTransaction(expense("Bus", "Transport", "2.00", LocalDate.of(2025, 2, 2)), userId);
+
+        CursorPage<TransactionListItem> slice = transactionService.getTransactionsAfterCursor(
+                userId, null, "Food", null, null, null, "", 10);
+
+        assertEquals(1, slice.getContent().size());
+        assertEquals("Lunch", slice.getContent().get(0).getTitle());
+        assertFalse(slice.isHasNext());
+        assertNull(slice.getNextCursor());
+    }
+
+    @Test
+    void keysetPagination_rejectsInvalidCursor() {
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getTransactionsAfterCursor(
+                userId, null, null, null, null, null, "not-a-cursor", 10));
+    }
+
+    @Test
+    void keysetPagination_rejectsOutOfRangeSize() {
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getTransactionsAfterCursor(
+                userId, null, null, null, null, null, "", 0));
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getTransactionsAfterCursor(
+                userId, null, null, null, null, null, "", 101));
+    }
+
+    @Test
+    void filteredTransactions_returnsProjectionPage() {
+        for (int i = 0; i < 3; i++) {
+            transactionService.createTransaction(expense("P" + i, "Food", "3.00", LocalDate.of(2025, 3, 1 + i)), userId);
+        }
+
+        Page<TransactionListItem> page = transactionService.getFilteredTransactions(
+                userId, null, null, null, null, null, 0, 2, new String[]{"date", "desc"});
+
+        assertEquals(3, page.getTotalElements());
+        assertEquals(2, page.getContent().size());
+        assertEquals("P2", page.getContent().get(0).getTitle());
+        assertEquals(new BigDecimal("3.00"), page.getContent().get(0).getAmount());
+    }
+
+    @Test
+    void exportTransactions_streamsFilteredCsv() throws Exception {
+        transactionService.createTransaction(expense("Coffee, large", "Food", "4.50", LocalDate.of(2025, 4, 2)), userId);
+        transactionService.createTransaction(expense("Taxi", "Transport", "9.00", LocalDate.of(2025, 4, 3)), userId);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = transactionService.exportTransactions(
+                userId, null, "Food", null, null, null, TransactionExportWriter.Format.csv, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, rows);
+        assertEquals("id,date,type,category,title,amount", lines[0]);
+        assertTrue(lines[1].endsWith(",2025-04-02,expense,Food,\"Coffee, large\",4.50"), lines[1]);
+    }
+
+    @Test
+    void importTransactions_insertsAllRowsAndAppliesBudgetDeltasPerGroup() throws Exception {
+        budgetService.createOrUpdateBudget(Budget.builder()
+                .category("Food").amount(new BigDecimal("1000.00")).month(5).year(2025).build(), userId);
+
+        StringBuilder csv = new StringBuilder("title,amount,date,category,type\n");
+        for (int i = 0; i < 1200; i++) {
+            csv.append("Row ").append(i).append(",0.50,2025-05-").append(String.format("%02d", 1 + i % 28))
+                    .append(",Food,expense\n");
+        }
+        csv.append("Salary,100.00,2025-05-01,Job,income\n");
+
+        List<Transaction> parsed = importParser.parse(
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), "import.csv");
+        int imported = transactionService.importTransactions(parsed, userId);
+
+        assertEquals(1201, imported);
+        BudgetDTO budget = budgetService.getBudgetsForMonth(userId, 5, 2025).get(0);
+        assertEquals(0, new BigDecimal("600.00").compareTo(budget.getSpentAmount()));
+    }
+
+    @Test
+    void importTransactions_roundTripsCsvProducedByExport() throws Exception {
+        String title = "Quà \"sinh nhật\", dòng 1\ndòng 2";
+        transactionService.createTransaction(expense(title, "Gifts, misc", "15.25", LocalDate.of(2025, 8, 2)), userId);
+        transactionService.createTransaction(expense("Taxi", "Transport", "9.00", LocalDate.of(2025, 8, 3)), userId);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transactionService.exportTransactions(
+                userId, null, null, null, null, null, TransactionExportWriter.Format.csv, out);
+        List<Transaction> parsed = importParser.parse(new ByteArrayInputStream(out.toByteArray()), "export.csv");
+
+        assertEquals(2, parsed.size());
+        Transaction gift = parsed.get(1);
+        assertEquals(title, gift.getTitle());
+        assertEquals("Gifts, misc", gift.getCategory());
+        assertEquals(0, new BigDecimal("15.25").compareTo(gift.getAmount()));
+        assertEquals(LocalDate.of(2025, 8, 2), gift.getDate());
+        assertEquals("Taxi", parsed.get(0).getTitle());
+    }
+
+    @Test
+    void monthlyAggregates_trackCreateUpdateDeleteAndMatchLiveData() {
+        Transaction lunch = transactionService.createTransaction(expense("Lunch", "Food", "12.00", LocalDate.of(2025, 6, 3)), userId);
+        Transaction taxi = transactionService.createTransaction(expense("Taxi", "Transport", "8.00", LocalDate.of(2025, 6, 4)), userId);
+        transactionService.createTransaction(Transaction.builder().title("Salary").category("Job")
+                .amount(new BigDecimal("500.00")).date(LocalDate.of(2025, 6, 1))
+                .type(Transaction.TransactionType.income).build(), userId);
+
+        // Đổi danh mục và số tiền, rồi xóa một giao dịch
+        transactionService.updateTransaction(lunch.getId(),
+                expense("Dinner", "Dining", "20.00", LocalDate.of(2025, 6, 3)), userId);
+        transactionService.deleteTransaction(taxi.getId(), userId);
+
+        DashboardStats stats = dashboardService.getDashboardStats(userId, 6, 2025);
+        assertEquals(0, new BigDecimal("500.00").compareTo(stats.getTotalIncome()));
+        assertEquals(0, new BigDecimal("20.00").compareTo(stats.getTotalExpenses()));
+        assertEquals(1, stats.getExpenseByCategory().size());
+        assertEquals("Dining", stats.getExpenseByCategory().get(0).getCategory());
+        assertEquals(0, new BigDecimal("480.00").compareTo(stats.getCurrentBalance()));
+
+        assertEquals(0, aggregateService.verify());
+        long version = dataVersionService.getVersion(userId);
+        aggregateService.rebuild();
+        assertEquals(0, aggregateService.verify());
+        // Không có gì lệch thì dựng lại không làm mất hiệu lực ETag
+        assertEquals(version, dataVersionService.getVersion(userId));
+
+        // Mất dòng tổng hợp: dựng lại sửa số liệu, tăng phiên bản và xóa cache dashboard
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                aggregateRepository.deleteByUserIds(List.of(userId)));
+        dashboardCache.get(userId, 6, 2025, dataVersionService.getVersion(userId), () -> dashboardService.getDashboardStats(userId, 6, 2025));
+        aggregateService.rebuild();
+        assertEquals(version + 1, dataVersionService.getVersion(userId));
+        stats = dashboardCache.get(userId, 6, 2025, dataVersionService.getVersion(userId), () -> dashboardService.getDashboardStats(userId, 6, 2025));
+        assertEquals(0, new BigDecimal("500.00").compareTo(stats.getTotalIncome()));
+    }
+
+    @Test
+    void monthlyAggregates_rebuildKeepsWritesCommittedWhileItRuns() throws Exception {
+        transactionService.createTransaction(expense("Rent", "Housing", "300.00", LocalDate.of(2025, 6, 1)), userId);
+
+        ExecutorService pool = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 10; i++) {
+                    aggregateService.rebuild();
+                }
+            }));
+            for (int i = 0; i < 200; i++) {
+                // Vừa cộng vào dòng đã có vừa tạo khóa tổng hợp mới (danh mục mới) trong lúc dựng lại
+                String category = i % 2 == 0 ? "Housing" : "Misc" + i;
+                futures.add(pool.submit(() -> transactionService.createTransaction(
+                        expense("Item", category, "1.00", LocalDate.of(2025, 6, 2)), userId)));
+            }
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(0, aggregateService.verify());
+        assertEquals(0, new BigDecimal("500.00").compareTo(dashboardService.getDashboardStats(userId, 6, 2025).getTotalExpenses()));
+    }
+
+    @Test
+    void monthlyAggregates_areBackfilledOnlyWhileTheTableIsEmpty() {
+        transactionService.createTransaction(expense("Rent", "Housing", "300.00", LocalDate.of(2025, 6, 1)), userId);
+        assertFalse(aggregateService.backfillIfEmpty());
+
+        // Bảng tổng hợp rỗng (vừa nâng cấp) nhưng đã có giao dịch
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> aggregateRepository.deleteAllInBatch());
+        assertTrue(aggregateService.backfillIfEmpty());
+        assertEquals(0, aggregateService.verify());
+        assertEquals(0, new BigDecimal("300.00").compareTo(dashboardService.getDashboardStats(userId, 6, 2025).getTotalExpenses()));
+        assertFalse(aggregateService.backfillIfEmpty());
+    }
+
+    @Test
+    void userBalance_tracksAllTimeBalanceAndReconcilesDrift() {
+        transactionService.createTransaction(Transaction.builder().title("Salary").category("Job")
+                .amount(new BigDecimal("1000.00")).date(LocalDate.of(2025, 5, 1))
+                .type(Transaction.TransactionType.income).build(), userId);
+        transactionService.createTransaction(expense("Rent", "Housing", "300.00", LocalDate.of(2025, 5, 2)), userId);
+        Transaction lunch = transactionService.createTransaction(expense("Lunch", "Food", "15.00", LocalDate.of(2025, 6, 3)), userId);
+        transactionService.updateTransaction(lunch.getId(), expense("Lunch", "Food", "25.00", LocalDate.of(2025, 6, 3)), userId);
+
+        // Số dư là lũy kế mọi tháng, không chỉ tháng đang xem
+        DashboardStats stats = dashboardService.getDashboardStats(userId, 6, 2025);
+        assertEquals(0, new BigDecimal("675.00").compareTo(stats.getCurrentBalance()));
+        assertEquals(0, new BigDecimal("25.00").compareTo(stats.getTotalExpenses()));
+
+        // Làm lệch số dư rồi để job đối soát sửa lại
+        UserBalance balance = balanceRepository.findById(userId).orElseThrow();
+        balance.setBalance(new BigDecimal("1.00"));
+        balanceRepository.save(balance);
+
+        long version = dataVersionService.getVersion(userId);
+        dashboardCache.get(userId, 6, 2025, dataVersionService.getVersion(userId), () -> dashboardService.getDashboardStats(userId, 6, 2025));
+        assertTrue(balanceService.reconcile() >= 1);
+        assertEquals(0, new BigDecimal("675.00").compareTo(balanceService.getBalance(userId)));
+        assertEquals(version + 1, dataVersionService.getVersion(userId));
+        stats = dashboardCache.get(userId, 6, 2025, dataVersionService.getVersion(userId), () -> dashboardService.getDashboardStats(userId, 6, 2025));
+        assertEquals(0, new BigDecimal("675.00").compareTo(stats.getCurrentBalance()));
+    }
+
+    @Test
+    void dashboardCache_servesRepeatedReadsAndIsEvictedByWrites() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<DashboardStats> loader = () -> {
+            loads.incrementAndGet();
+            return dashboardService.getDashboardStats(userId, 6, 2025);
+        };
+
+        dashboardCache.get(userId, 6, 2025, dataVersionService.getVersion(userId), loader);
+        dashboardCache.get(userId, 6, 2025, dataVersionService.getVersion(userId), loader);
+        assertEquals(1, loads.get());
+
+        // Ghi vào tháng khác vẫn phải xóa cache vì số dư lũy kế thay đổi
+        transactionService.createTransaction(expense("Gift", "Other", "40.00", LocalDate.of(2025, 1, 5)), userId);
+        DashboardStats stats = dashboardCache.get(userId, 6, 2025, dataVersionService.getVersion(userId), loader);
+        assertEquals(2, loads.get());
+        assertEquals(0, new BigDecimal("-40.00").compareTo(stats.getCurrentBalance()));
+    }
+
+    @Test
+    void dashboardCache_neverServesALoadThatStartedBeforeACommitUnderTheNewVersion() {
+        transactionService.createTransaction(expense("Rent", "Housing", "500.00", LocalDate.of(2025, 6, 1)), userId);
+        long versionBefore = dataVersionService.getVersion(userId);
+        DashboardStats beforeCommit = dashboardService.getDashboardStats(userId, 6, 2025);
+
+        transactionService.createTransaction(expense("Water", "Utilities", "20.00", LocalDate.of(2025, 6, 2)), userId);
+        // Lần nạp chậm bắt đầu trước commit chỉ ghi được vào khóa của phiên bản cũ
+        dashboardCache.get(userId, 6, 2025, versionBefore, () -> beforeCommit);
+
+        DashboardStats stats = dashboardCache.get(userId, 6, 2025, dataVersionService.getVersion(userId),
+                () -> dashboardService.getDashboardStats(userId, 6, 2025));
+        assertEquals(0, new BigDecimal("520.00").compareTo(stats.getTotalExpenses()));
+    }
+
+    @Test
+    void dataVersion_isBumpedByEveryWrite() {
+        long initial = dataVersionService.getVersion(userId);
+
+        Transaction taxi = transactionService.createTransaction(expense("Taxi", "Transport", "8.00", LocalDate.of(2025, 6, 4)), userId);
+        transactionService.updateTransaction(taxi.getId(), expense("Taxi", "Transport", "9.00", LocalDate.of(2025, 6, 4)), userId);
+        transactionService.deleteTransaction(taxi.getId(), userId);
+        assertEquals(initial + 3, dataVersionService.getVersion(userId));
+
+        budgetService.createOrUpdateBudget(Budget.builder()
+                .category("Transport").amount(new BigDecimal("100.00")).month(6).year(2025).build(), userId);
+        assertEquals(initial + 4, dataVersionService.getVersion(userId));
+
+        // Cập nhật hồ sơ người dùng qua entity không được ghi đè phiên bản
+        User user = userRepository.findById(userId).orElseThrow();
+        user.setName("Renamed");
+        userRepository.save(user);
+        assertEquals(initial + 4, dataVersionService.getVersion(userId));
+    }
+
+    @Test
+    void monthlySeries_isGapFilledOverTheRequestedRange() {
+        transactionService.createTransaction(expense("Rent", "Housing", "300.00", LocalDate.of(2024, 12, 31)), userId);
+        transactionService.createTransaction(expense("Lunch", "Food", "15.00", LocalDate.of(2025, 1, 31)), userId);
+        transactionService.createTransaction(Transaction.builder().title("Salary").category("Job")
+                .amount(new BigDecimal("1000.00")).date(LocalDate.of(2025, 3, 1))
+                .type(Transaction.TransactionType.income).build(), userId);
+        transactionService.createTransaction(expense("Out of range", "Food", "99.00", LocalDate.of(2025, 4, 1)), userId);
+
+        List<DashboardStats.MonthlyData> series =
+                dashboardService.getMonthlySeries(userId, YearMonth.of(2024, 12), YearMonth.of(2025, 3));
+
+        assertEquals(List.of("2024-12", "2025-01", "2025-02", "2025-03"),
+                series.stream().map(DashboardStats.MonthlyData::getMonth).toList());
+        assertEquals(0, new BigDecimal("300.00").compareTo(series.get(0).getExpenses()));
+        assertEquals(0, new BigDecimal("15.00").compareTo(series.get(1).getExpenses()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(series.get(2).getIncome()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(series.get(2).getExpenses()));
+        assertEquals(0, new BigDecimal("1000.00").compareTo(series.get(3).getIncome()));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> dashboardService.getMonthlySeries(userId, YearMonth.of(2025, 3), YearMonth.of(2025, 1)));
+    }
+
+    @Test
+    void budgetSpentAmount_isExactUnderConcurrentCreates() throws Exception {
+        budgetService.createOrUpdateBudget(Budget.builder()
+                .category("Food").amount(new BigDecimal("5000.00")).month(7).year(2025).build(), userId);
+
+        int creates = 2000;
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < creates; i++) {
+                int day = 1 + i % 28;
+                futures.add(pool.submit(() -> transactionService.createTransaction(
+                        expense("Snack", "Food", "0.25", LocalDate.of(2025, 7, day)), userId)));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        BudgetDTO budget = budgetService.getBudgetsForMonth(userId, 7, 2025).get(0);
+        assertEquals(0, new BigDecimal("500.00").compareTo(budget.getSpentAmount()));
+
+        // Đổi hạn mức ngân sách không được ghi đè số tiền đã chi
+        budgetService.createOrUpdateBudget(Budget.builder()
+                .category("Food").amount(new BigDecimal("6000.00")).month(7).year(2025).build(), userId);
+        budget = budgetService.getBudgetsForMonth(userId, 7, 2025).get(0);
+        assertEquals(0, new BigDecimal("6000.00").compareTo(budget.getAmount()));
+        assertEquals(0, new BigDecimal("500.00").compareTo(budget.getSpentAmount()));
+    }
+
+    @Test
+    void budgetSpentAmount_isExactUnderConcurrentCreatesAndDeletes() throws Exception {
+        budgetService.createOrUpdateBudget(Budget.builder()
+                .category("Food").amount(new BigDecimal("5000.00")).month(7).year(2025).build(), userId);
+        List<UUID> existing = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            existing.add(transactionService.createTransaction(
+                    expense("Lunch", "Food", "1.00", LocalDate.of(2025, 7, 1 + i % 28)), userId).getId());
+        }
+
+        // Tạo và xóa xen kẽ trên cùng người dùng/danh mục/tháng: cùng thứ tự khóa nên không deadlock
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < existing.size(); i++) {
+                int day = 1 + i % 28;
+                UUID toDelete = existing.get(i);
+                futures.add(pool.submit(() -> transactionService.createTransaction(
+                        expense("Snack", "Food", "0.25", LocalDate.of(2025, 7, day)), userId)));
+                futures.add(pool.submit(() -> transactionService.deleteTransaction(toDelete, userId)));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        BudgetDTO budget = budgetService.getBudgetsForMonth(userId, 7, 2025).get(0);
+        assertEquals(0, new BigDecimal("100.00").compareTo(budget.getSpentAmount()));
+        assertEquals(0, aggregateService.verify());
+    }
+
+    @Test
+    void budgetReconciliation_initializesNewBudgetsAndCorrectsDrift() {
+        transactionService.createTransaction(expense("Bus", "Transport", "3.00", LocalDate.of(2025, 8, 2)), userId);
+        transactionService.createTransaction(expense("Train", "Transport", "7.00", LocalDate.of(2025, 8, 3)), userId);
+
+        // Ngân sách đặt sau khi đã có giao dịch bắt đầu từ số đã chi thực tế
+        budgetService.createOrUpdateBudget(Budget.builder()
+                .category("Transport").amount(new BigDecimal("100.00")).month(8).year(2025).build(), userId);
+        assertEquals(0, new BigDecimal("10.00").compareTo(budgetService.getBudgetsForMonth(userId, 8, 2025).get(0).getSpentAmount()));
+
+        // Làm lệch bộ đếm trực tiếp trong database
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> budgetRepository.incrementSpentAmount(
+                userId, "Transport", 8, 2025, new BigDecimal("-15.00"), LocalDateTime.now()));
+
+        long version = dataVersionService.getVersion(userId);
+        BudgetReconciliationReport report = budgetReconciliationService.reconcile(YearMonth.of(2025, 8));
+        assertTrue(report.completed());
+        assertEquals(version + 1, dataVersionService.getVersion(userId));
+        assertTrue(report.budgetsCorrected() >= 1);
+        assertTrue(report.totalDrift().compareTo(new BigDecimal("15.00")) >= 0);
+        assertEquals(0, new BigDecimal("10.00").compareTo(budgetService.getBudgetsForMonth(userId, 8, 2025).get(0).getSpentAmount()));
+
+        // Chạy lại không còn gì để sửa, và phiên bản dữ liệu không đổi
+        assertEquals(0, budgetReconciliationService.reconcile(YearMonth.of(2025, 8)).budgetsCorrected());
+        assertEquals(version + 1, dataVersionService.getVersion(userId));
+    }
+
+    @Test
+    void budgetReconciliation_resumesAfterTheCursorOfAnUnfinishedRun() {
+        budgetService.createOrUpdateBudget(Budget.builder()
+                .category("Transport").amount(new BigDecimal("100.00")).month(9).year(2025).build(), userId);
+        transactionService.createTransaction(expense("Bus", "Transport", "4.00", LocalDate.of(2025, 9, 2)), userId);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> budgetRepository.incrementSpentAmount(
+                userId, "Transport", 9, 2025, new BigDecimal("-3.00"), LocalDateTime.now()));
+
+        // Lần chạy trước dừng sau người dùng này: lần chạy kế tiếp chỉ xử lý những người dùng sau con trỏ
+        checkpointRepository.save(SchedulerCheckpoint.builder().jobName("budget-reconciliation:2025-09")
+                .runDate(LocalDate.now()).lastProcessedId(userId).completed(false).build());
+        BudgetReconciliationReport resumed = budgetReconciliationService.reconcile(YearMonth.of(2025, 9));
+        assertTrue(resumed.completed());
+        assertNull(resumed.cursor());
+        assertEquals(0, resumed.failedChunks());
+        assertEquals(0, new BigDecimal("1.00").compareTo(budgetService.getBudgetsForMonth(userId, 9, 2025).get(0).getSpentAmount()));
+        assertTrue(checkpointRepository.findById("budget-reconciliation:2025-09").orElseThrow().isCompleted());
+
+        // Vòng đã xong: lần chạy sau bắt đầu lại từ đầu và sửa được ngân sách này
+        budgetReconciliationService.reconcile(YearMonth.of(2025, 9));
+        assertEquals(0, new BigDecimal("4.00").compareTo(budgetService.getBudgetsForMonth(userId, 9, 2025).get(0).getSpentAmount()));
+    }
+
+    @Test
+    void cashFlowForecast_mergesRecurringOccurrencesAndProjectsMonthEndBalance() {
+        Transaction salary = expense("Salary", "Salary", "5000.00", LocalDate.of(2025, 3, 1));
+        salary.setType(Transaction.TransactionType.income);
+        transactionService.createTransaction(salary, userId);
+        // Trung bình 3 tháng trước: Food 300/tháng; tháng 6 đã chi 100
+        for (int month = 3; month <= 5; month++) {
+            transactionService.createTransaction(expense("Market", "Food", "300.00", LocalDate.of(2025, month, 5)), userId);
+        }
+        transactionService.createTransaction(expense("Market", "Food", "100.00", LocalDate.of(2025, 6, 2)), userId);
+
+        User owner = userRepository.findById(userId).orElseThrow();
+        recurring(owner, "Payroll", "Salary", Transaction.TransactionType.income, "2000.00",
+                RecurringTransaction.Frequency.MONTHLY, LocalDate.of(2025, 6, 25), true);
+        recurring(owner, "Gym", "Health", Transaction.TransactionType.expense, "10.00",
+                RecurringTransaction.Frequency.WEEKLY, LocalDate.of(2025, 6, 12), true);
+        recurring(owner, "Groceries", "Food", Transaction.TransactionType.expense, "50.00",
+                RecurringTransaction.Frequency.WEEKLY, LocalDate.of(2025, 6, 14), true);
+        recurring(owner, "Old plan", "Health", Transaction.TransactionType.expense, "99.00",
+                RecurringTransaction.Frequency.DAILY, LocalDate.of(2025, 6, 1), false);
+        long transactionsBefore = transactionRepository.count();
+
+        CashFlowForecast forecast = forecastService.forecast(userId, 2, LocalDate.of(2025, 6, 10));
+
+        // Tháng 6: Gym 12, 19, 26; Groceries 14, 21, 28; Payroll 25. Tháng 7: Gym x5, Groceries x4, Payroll 25
+        assertEquals(17, forecast.occurrences().size());
+        assertFalse(forecast.occurrencesTruncated());
+        assertEquals(LocalDate.of(2025, 6, 12), forecast.occurrences().get(0).date());
+        for (int i = 1; i < forecast.occurrences().size(); i++) {
+            assertFalse(forecast.occurrences().get(i).date().isBefore(forecast.occurrences().get(i - 1).date()));
+        }
+        assertEquals(LocalDate.of(2025, 7, 31), forecast.to());
+        assertEquals(0, new BigDecimal("4000.00").compareTo(forecast.currentBalance()));
+
+        CashFlowForecast.MonthProjection june = forecast.months().get(0);
+        assertEquals(YearMonth.of(2025, 6), june.month());
+        assertEquals(0, new BigDecimal("180.00").compareTo(june.recurringExpenses()));
+        // Food: 300 trung bình - 100 đã chi - 150 định kỳ còn lại
+        assertEquals(0, new BigDecimal("50.00").compareTo(june.estimatedOtherExpenses()));
+        assertEquals(0, new BigDecimal("5770.00").compareTo(june.projectedEndBalance()));
+
+        CashFlowForecast.MonthProjection july = forecast.months().get(1);
+        assertEquals(0, new BigDecimal("250.00").compareTo(july.recurringExpenses()));
+        assertEquals(0, new BigDecimal("100.00").compareTo(july.estimatedOtherExpenses()));
+        assertEquals(0, new BigDecimal("7420.00").compareTo(july.projectedEndBalance()));
+
+        // Không sinh dòng nào trong database
+        assertEquals(transactionsBefore, transactionRepository.count());
+        assertThrows(IllegalArgumentException.class, () -> forecastService.forecast(userId, 0, LocalDate.of(2025, 6, 10)));
+    }
+
+    private void recurring(User owner, String title, String category, Transaction.TransactionType type, String amount,
+                           RecurringTransaction.Frequency frequency, LocalDate start, boolean active) {
+        recurringRepository.save(RecurringTransaction.builder()
+                .user(owner)
+                .title(title)
+                .category(category)
+                .type(type)
+                .amount(new BigDecimal(amount))
+                .frequency(frequency)
+                .startDate(start)
+                .nextExecutionDate(start)
+                .isActive(active)
+                .build());
+    }
+}